@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball;
+
+import com.badlogic.gdx.audio.Music;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+
+/**
+ * A playable level: its map, loaded with the rest of the game assets, and its music, which
+ * is only loaded while the level is being played.
+ */
+public class Level {
+    /** Shared by every level, loaded with the levels and used as soon as a level starts. */
+    public static final String ATLAS = "data/game.atlas";
+    public static final String JUMP_SOUND = "data/sound/jump.wav";
+    public static final String ROPE_SOUND = "data/sound/rope.wav";
+    private static final String[] SHARED_ASSETS = {ATLAS, JUMP_SOUND, ROPE_SOUND};
+
+    private final String name;
+    private final String mapPath;
+    private final String musicPath;
+    private final boolean endless;
+
+    public Level(String name, String mapPath, String musicPath) {
+        this(name, mapPath, musicPath, false);
+    }
+
+    /**
+     * @param endless whether the map is only a start and the rest of the level is generated while it is played.
+     */
+    public Level(String name, String mapPath, String musicPath, boolean endless) {
+        this.name = name;
+        this.mapPath = mapPath;
+        this.musicPath = musicPath;
+        this.endless = endless;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getMapPath() {
+        return mapPath;
+    }
+
+    public boolean isEndless() {
+        return endless;
+    }
+
+    public TiledMap getMap() {
+        return Resources.get().get(mapPath, TiledMap.class);
+    }
+
+    public void loadMusic() {
+        if (!Resources.get().isLoaded(musicPath)) {
+            Resources.get().load(musicPath, Music.class);
+        }
+    }
+
+    public void unloadMusic() {
+        if (Resources.get().isLoaded(musicPath)) {
+            Resources.get().unload(musicPath);
+        }
+    }
+
+    public Music getMusic() {
+        return Resources.get().get(musicPath, Music.class);
+    }
+
+    /**
+     * @return whether the map, the music and the assets shared by all levels can be used.
+     */
+    public boolean isLoaded() {
+        for (String path : SHARED_ASSETS) {
+            if (!Resources.get().isLoaded(path)) {
+                return false;
+            }
+        }
+        return Resources.get().isLoaded(mapPath) && Resources.get().isLoaded(musicPath);
+    }
+}
@@ -23,19 +23,37 @@
 
 package com.nickschatz.ninjaball;
 
+import com.badlogic.gdx.assets.loaders.resolvers.InternalFileHandleResolver;
 import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.maps.tiled.AtlasTmxMapLoader;
 import com.badlogic.gdx.maps.tiled.TiledMap;
-import com.badlogic.gdx.maps.tiled.TmxMapLoader;
+import com.nickschatz.ninjaball.util.ChunkedTmxMapLoader;
 
 public class Levels {
-    private static TmxMapLoader loader = new TmxMapLoader();
-    public static TiledMap level1;
+    public static final Level LEVEL1 = new Level("Level 1", "data/level1.tmx", "data/music/Master of the Feast.mp3");
+
+    /** Not in {@link #ALL}, it has no exit and the tools have nothing to check in it. */
+    public static final Level ENDLESS = new Level("Endless", "data/endless.tmx", "data/music/Master of the Feast.mp3", true);
+
+    public static final Level[] ALL = {LEVEL1};
+
+    /**
+     * Queues the level maps in {@link Resources}. Their tiles come from the atlas named by the
+     * map's "atlas" property, which is shared with the sprites, and tile layers are stored sparsely,
+     * see {@link ChunkedTmxMapLoader}. Music is loaded per level, see
+     * {@link Level#loadMusic()}.
+     */
     public static void load() {
-        level1 = loader.load("data/level1.tmx", new Parameters());
+        Resources.get().setLoader(TiledMap.class, new ChunkedTmxMapLoader(new InternalFileHandleResolver()));
+        for (Level level : ALL) {
+            Resources.get().load(level.getMapPath(), TiledMap.class, new Parameters());
+        }
+        Resources.get().load(ENDLESS.getMapPath(), TiledMap.class, new Parameters());
     }
 
-    private static class Parameters extends TmxMapLoader.Parameters {
+    private static class Parameters extends AtlasTmxMapLoader.AtlasTiledMapLoaderParameters {
         public Parameters() {
+            super.forceTextureFilters = true;
             super.textureMinFilter = Texture.TextureFilter.Linear;
             super.textureMagFilter = Texture.TextureFilter.Linear;
         }
@@ -23,69 +23,181 @@
 
 package com.nickschatz.ninjaball;
 
+import com.badlogic.gdx.Application;
 import com.badlogic.gdx.Game;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input;
-import com.badlogic.gdx.audio.Music;
+import com.badlogic.gdx.Screen;
 import com.badlogic.gdx.audio.Sound;
 import com.badlogic.gdx.graphics.GL20;
-import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureAtlas;
 import com.badlogic.gdx.utils.Logger;
+import com.badlogic.gdx.utils.async.AsyncExecutor;
+import com.nickschatz.ninjaball.perf.GLProfiler;
+import com.nickschatz.ninjaball.perf.LatencyProbe;
+import com.nickschatz.ninjaball.perf.LoadTimings;
+import com.nickschatz.ninjaball.screen.LoadingScreen;
 import com.nickschatz.ninjaball.screen.MenuScreen;
+import com.nickschatz.ninjaball.util.LightBenchmark;
+import com.nickschatz.ninjaball.util.LightSettings;
+import com.nickschatz.ninjaball.util.ResourceTracker;
+import com.nickschatz.ninjaball.util.SettingsStore;
 
 public class NinjaBallGame extends Game {
+    public static final String STAGE_UI = "ui";
+    public static final String STAGE_GAME = "game assets";
+    public static final String STAGE_BENCHMARK = "light benchmark";
+
+    /**
+     * How long each frame may spend on loading once the menu is up.
+     */
+    private static final int LOAD_BUDGET_MS = 8;
+
 	public SpriteBatch batch;
     public BitmapFont defaultFont;
 
-    private boolean loading = true;
     public boolean useAccelerometer = false;
+    public LightSettings lightSettings;
     public Logger log;
+    public LoadTimings loadTimings;
+    public SettingsStore options;
+    public Progress progress;
+    public LatencyProbe latencyProbe;
+    public GLProfiler glProfiler;
+    private AsyncExecutor ioExecutor;
 	
 	@Override
 	public void create () {
+        loadTimings = new LoadTimings(Logger.INFO);
+        loadTimings.begin(STAGE_UI);
+
         Resources.init();
-        Levels.load();
         log = new Logger("NinjaBall", Logger.DEBUG);
 
         defaultFont = new BitmapFont();
 
 		batch = new SpriteBatch();
 
-        //Resources.get().load("data/level1.tmx", TiledMap.class);
-        Resources.get().load("data/ball64x64.png", Texture.class);
-        Resources.get().load("data/rope.png", Texture.class);
-        Resources.get().load("data/ropeKnot.png", Texture.class);
+        //Stage one, everything the menu needs
         Resources.get().load("data/uiskin.atlas", TextureAtlas.class);
 
-        Resources.get().load("data/sound/rope.wav", Sound.class);
-        Resources.get().load("data/sound/jump.wav", Sound.class);
-
-        Resources.get().load("data/music/Call to Adventure.mp3", Music.class);
-        Resources.get().load("data/music/Hidden Agenda.mp3", Music.class);
-        Resources.get().load("data/music/Master of the Feast.mp3", Music.class);
-
         useAccelerometer = Gdx.input.isPeripheralAvailable(Input.Peripheral.Accelerometer);
         log.info("Accelerometer IS " + (useAccelerometer ? "" : "NOT ") + "available");
+
+        ioExecutor = new AsyncExecutor(1);
+        options = new SettingsStore("Options", ioExecutor, Logger.INFO);
+        progress = new Progress(ioExecutor, Logger.INFO);
+        latencyProbe = new LatencyProbe(Logger.INFO);
+        latencyProbe.setEnabled(options.getBoolean("latencyProbe", false));
+        glProfiler = new GLProfiler(Logger.INFO);
+        glProfiler.setEnabled(options.getBoolean("glProfiler", false));
+        if (options.contains("lightProfile")) {
+            lightSettings = LightSettings.forName(options.getString("lightProfile", null), LightSettings.MEDIUM);
+        }
 	}
 
+    /**
+     * Stage two, the levels and their sprites. Loads in the background while the menu is up,
+     * music is loaded per level in {@link #startLevel(Level)}.
+     */
+    private void loadGameAssets() {
+        loadTimings.begin(STAGE_GAME);
+        Resources.get().load(Level.ATLAS, TextureAtlas.class);
+        Resources.get().load(Level.ROPE_SOUND, Sound.class);
+        Resources.get().load(Level.JUMP_SOUND, Sound.class);
+        Levels.load();
+    }
+
+    public void setLightSettings(LightSettings lightSettings) {
+        this.lightSettings = lightSettings;
+        options.putString("lightProfile", lightSettings.getName());
+    }
+
+    /**
+     * Loads what the level still needs behind a loading screen and starts it.
+     */
+    public void startLevel(Level level) {
+        if (lightSettings == null) {
+            loadTimings.begin(STAGE_BENCHMARK);
+            setLightSettings(LightBenchmark.pickDefault(log));
+            loadTimings.end(STAGE_BENCHMARK);
+        }
+        level.loadMusic();
+        setScreen(new LoadingScreen(this, level));
+    }
+
+    /**
+     * Switches screens and disposes the previous one at the start of the next frame, so a
+     * screen can hand over from inside a world step or a stage event without freeing
+     * anything it is still using.
+     */
+    @Override
+    public void setScreen(Screen screen) {
+        final Screen previous = getScreen();
+        super.setScreen(screen);
+        if (previous == null || previous == screen) {
+            return;
+        }
+        Gdx.app.postRunnable(new Runnable() {
+            @Override
+            public void run() {
+                previous.dispose();
+                if (Gdx.app.getLogLevel() >= Application.LOG_DEBUG) {
+                    int leaked = ResourceTracker.reportLeaks(getScreen(), log);
+                    log.debug("screen transition to " + getScreen() + ", " + leaked + " resources leaked");
+                }
+            }
+        });
+    }
+
 	@Override
 	public void render () {
-        if (loading && Resources.get().update()) {
+        //Images are decoded on the asset manager's thread where the backend has one
+        boolean loaded = Resources.get().update(LOAD_BUDGET_MS);
+
+        if (getScreen() == null) {
+            if (!loaded) {
+                Gdx.gl.glClearColor(1, 0, 0, 1);
+                Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+                batch.begin();
+                defaultFont.draw(batch, "Loading...", 100, 100);
+                batch.end();
+                return;
+            }
+            loadTimings.end(STAGE_UI);
             setScreen(new MenuScreen(this));
-            loading = false;
-        }
-        else if (loading) {
-            Gdx.gl.glClearColor(1, 0, 0, 1);
-            Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
-            batch.begin();
-            defaultFont.draw(batch, "Loading...", 100, 100);
-            batch.end();
+            loadGameAssets();
         }
-        else {
-            super.render();
+        else if (loaded && loadTimings.isRunning(STAGE_GAME)) {
+            loadTimings.end(STAGE_GAME);
         }
+
+        super.render();
+
+        options.update();
+        progress.getStore().update();
 	}
+
+    @Override
+    public void pause() {
+        super.pause();
+        if (latencyProbe.isEnabled()) {
+            latencyProbe.report();
+        }
+        if (glProfiler.isEnabled()) {
+            glProfiler.writeCsv();
+        }
+        options.flush(false);
+        progress.getStore().flush(false);
+    }
+
+    @Override
+    public void dispose() {
+        super.dispose();
+        options.flush(true);
+        progress.getStore().flush(true);
+        ioExecutor.dispose();
+    }
 }
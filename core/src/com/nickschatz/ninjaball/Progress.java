@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball;
+
+import com.badlogic.gdx.utils.async.AsyncExecutor;
+import com.nickschatz.ninjaball.util.SettingsStore;
+
+/**
+ * Per-level records, persisted through a {@link SettingsStore} so saving never blocks a frame.
+ */
+public class Progress {
+    private static final String BEST_TIME = "bestTime.";
+    private static final String GHOST = "ghost.";
+
+    private final SettingsStore store;
+
+    public Progress(AsyncExecutor executor, int logLevel) {
+        store = new SettingsStore("Progress", executor, logLevel);
+    }
+
+    /**
+     * @return best completion time in seconds, or -1 if the level was never finished.
+     */
+    public float getBestTime(Level level) {
+        return store.getFloat(BEST_TIME + level.getName(), -1);
+    }
+
+    /**
+     * @return true if this is a new best time.
+     */
+    public boolean submitTime(Level level, float seconds) {
+        float best = getBestTime(level);
+        if (best >= 0 && best <= seconds) {
+            return false;
+        }
+        store.putFloat(BEST_TIME + level.getName(), seconds);
+        return true;
+    }
+
+    /**
+     * @return the best run as written by {@link com.nickschatz.ninjaball.ghost.GhostRecorder#toBase64()}, or null.
+     */
+    public String getGhost(Level level) {
+        return store.getString(GHOST + level.getName(), null);
+    }
+
+    public void putGhost(Level level, String run) {
+        store.putString(GHOST + level.getName(), run);
+    }
+
+    public SettingsStore getStore() {
+        return store;
+    }
+}
@@ -36,6 +36,17 @@ public class Resources extends AssetManager {
         return ourInstance = new Resources();
     }
     private Resources() {}
+
+    /**
+     * @return the asset, or null if it isn't loaded, for code that also runs without the game's
+     * assets such as the headless tools.
+     */
+    public static <T> T getIfLoaded(String fileName, Class<T> type) {
+        if (ourInstance == null || !ourInstance.isLoaded(fileName, type)) {
+            return null;
+        }
+        return ourInstance.get(fileName, type);
+    }
     public void dispose() {
         super.dispose();
         ourInstance = null;
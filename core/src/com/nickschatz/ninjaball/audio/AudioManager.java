@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.audio;
+
+import com.badlogic.gdx.audio.Sound;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Logger;
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Plays sound effects through a fixed number of voices. Requests are queued by the game loop and
+ * issued once per frame from {@link #update()}, so several steps in one frame play an effect once.
+ * Each effect has a cap on its own instances, when it is reached the oldest instance is stopped and
+ * its voice reused. When all voices are busy, the oldest voice of the lowest priority is stolen if it
+ * doesn't outrank the new request, otherwise the request is dropped.
+ *
+ * <p>Sound has no way to tell when an instance ends, so a voice counts as busy for the length given
+ * when the effect was registered. Music streams separately and never takes a voice.
+ */
+public class AudioManager {
+
+    private final Logger log;
+    private final int maxVoices;
+    private final Array<Effect> queue = new Array<Effect>();
+    private final long[] voiceIds;
+    private final long[] voiceEnds;
+    private final long[] voiceStarts;
+    private final Effect[] voiceEffects;
+    private float volume = 1;
+
+    /**
+     * @param maxVoices effect instances that may play at once, keep it below the platform's stream limit.
+     */
+    public AudioManager(int maxVoices, int logLevel) {
+        this.maxVoices = maxVoices;
+        log = new Logger("AudioManager", logLevel);
+        voiceIds = new long[maxVoices];
+        voiceEnds = new long[maxVoices];
+        voiceStarts = new long[maxVoices];
+        voiceEffects = new Effect[maxVoices];
+    }
+
+    /**
+     * @param sound may be null, then the effect never plays.
+     * @param priority higher priorities steal voices from lower ones.
+     * @param maxInstances instances of this effect that may play at once.
+     * @param lengthMs how long one instance holds a voice.
+     */
+    public Effect register(Sound sound, int priority, int maxInstances, long lengthMs) {
+        return new Effect(sound, priority, maxInstances, lengthMs);
+    }
+
+    /**
+     * Issues the queued requests, highest priority first. Call once per frame.
+     */
+    public void update() {
+        if (queue.size == 0) return;
+
+        long now = TimeUtils.millis();
+        for (int i = 0; i < maxVoices; i++) {
+            if (voiceEffects[i] != null && voiceEnds[i] <= now) {
+                free(i);
+            }
+        }
+
+        queue.sort();
+        for (int i = 0; i < queue.size; i++) {
+            Effect effect = queue.get(i);
+            effect.requested = false;
+            int voice = findVoice(effect);
+            if (voice < 0) {
+                log.debug("dropped effect with priority " + effect.priority);
+                continue;
+            }
+            if (voiceEffects[voice] != null) {
+                voiceEffects[voice].sound.stop(voiceIds[voice]);
+                free(voice);
+            }
+            long id = effect.sound.play(volume * effect.requestVolume);
+            if (id == -1) continue;
+            effect.sound.setPriority(id, effect.priority);
+            voiceIds[voice] = id;
+            voiceEffects[voice] = effect;
+            voiceStarts[voice] = now;
+            voiceEnds[voice] = now + effect.lengthMs;
+            effect.instances++;
+        }
+        queue.clear();
+    }
+
+    /**
+     * @return a voice for the effect: its own oldest instance if it is at its cap, a free voice, or one
+     * stolen from the oldest instance of the lowest priority. -1 if every voice outranks the effect.
+     */
+    private int findVoice(Effect effect) {
+        if (effect.instances >= effect.maxInstances) {
+            return oldest(effect, Integer.MAX_VALUE);
+        }
+        for (int i = 0; i < maxVoices; i++) {
+            if (voiceEffects[i] == null) return i;
+        }
+        int lowest = Integer.MAX_VALUE;
+        for (int i = 0; i < maxVoices; i++) {
+            lowest = Math.min(lowest, voiceEffects[i].priority);
+        }
+        if (lowest > effect.priority) {
+            return -1;
+        }
+        return oldest(null, lowest);
+    }
+
+    /**
+     * @param effect only look at voices of this effect, or any effect if null.
+     */
+    private int oldest(Effect effect, int priority) {
+        int oldest = -1;
+        for (int i = 0; i < maxVoices; i++) {
+            Effect playing = voiceEffects[i];
+            if (playing == null || (effect != null && playing != effect) || (effect == null && playing.priority != priority)) {
+                continue;
+            }
+            if (oldest < 0 || voiceStarts[i] < voiceStarts[oldest]) {
+                oldest = i;
+            }
+        }
+        return oldest;
+    }
+
+    private void free(int voice) {
+        voiceEffects[voice].instances--;
+        voiceEffects[voice] = null;
+    }
+
+    /**
+     * Stops every effect and forgets the queued requests.
+     */
+    public void stopAll() {
+        for (int i = 0; i < maxVoices; i++) {
+            if (voiceEffects[i] != null) {
+                voiceEffects[i].sound.stop(voiceIds[i]);
+                free(i);
+            }
+        }
+        for (Effect effect : queue) {
+            effect.requested = false;
+        }
+        queue.clear();
+    }
+
+    /**
+     * @param volume applied to every effect played from now on.
+     */
+    public void setVolume(float volume) {
+        this.volume = volume;
+    }
+
+    /**
+     * @return voices that are playing as far as the manager knows.
+     */
+    public int getActiveVoices() {
+        int active = 0;
+        long now = TimeUtils.millis();
+        for (int i = 0; i < maxVoices; i++) {
+            if (voiceEffects[i] != null && voiceEnds[i] > now) active++;
+        }
+        return active;
+    }
+
+    public class Effect implements Comparable<Effect> {
+        private final Sound sound;
+        private final int priority;
+        private final int maxInstances;
+        private final long lengthMs;
+        private int instances = 0;
+        private boolean requested = false;
+        private float requestVolume;
+
+        private Effect(Sound sound, int priority, int maxInstances, long lengthMs) {
+            this.sound = sound;
+            this.priority = priority;
+            this.maxInstances = maxInstances;
+            this.lengthMs = lengthMs;
+        }
+
+        /**
+         * Queues the effect for the next {@link AudioManager#update()}. Requests in the same frame
+         * play once, at the loudest volume asked for.
+         */
+        public void play(float volume) {
+            if (sound == null) return;
+            if (!requested) {
+                requested = true;
+                requestVolume = volume;
+                queue.add(this);
+            }
+            else {
+                requestVolume = Math.max(requestVolume, volume);
+            }
+        }
+
+        public void play() {
+            play(1);
+        }
+
+        @Override
+        public int compareTo(Effect other) {
+            return other.priority - priority;
+        }
+    }
+}
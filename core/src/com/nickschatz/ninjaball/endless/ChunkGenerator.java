@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.endless;
+
+import com.badlogic.gdx.graphics.Color;
+import com.nickschatz.ninjaball.physics.Units;
+
+/**
+ * Builds the chunks of the endless level: stepped ground with floating platforms to swing from, each
+ * platform with a rope anchor and a light under it. A chunk only depends on the seed and its index, and
+ * the ground height where two chunks meet is picked from the index of the edge, so chunks can be made in
+ * any order and come out the same when the player goes back. Holds no state, safe to call from any thread.
+ */
+public class ChunkGenerator {
+    public static final int COLUMNS = 16;
+    public static final float TILE_SIZE = Units.toMeters(70);
+    public static final float WIDTH = COLUMNS * TILE_SIZE;
+
+    /** Tiles of the castle tileset, by global id. */
+    public static final int TILE_SURFACE = 26;
+    public static final int TILE_FILL = 36;
+    public static final int TILE_PLATFORM_LEFT = 33;
+    public static final int TILE_PLATFORM_RIGHT = 19;
+    public static final int[] TILE_IDS = {TILE_SURFACE, TILE_FILL, TILE_PLATFORM_LEFT, TILE_PLATFORM_RIGHT};
+    static final int MAX_TILE_ID = 64;
+
+    /** Ground heights in tiles. Neighbouring columns differ by one at most, so every step can be jumped. */
+    private static final int MIN_GROUND = 2;
+    private static final int MAX_GROUND = 5;
+    /** Height at the start, the spawn in data/endless.tmx stands on it. */
+    private static final int START_GROUND = 3;
+    private static final int MIN_RUN = 2;
+    private static final int MAX_RUN = 5;
+    /** The wall closing off the left of the first chunk. */
+    private static final int WALL_ROWS = 12;
+    private static final int MAX_PLATFORMS = 2;
+    private static final int MIN_PLATFORM_WIDTH = 3;
+    private static final int MAX_PLATFORM_WIDTH = 5;
+    /** Free rows between the ground and a platform, within reach of the rope. */
+    private static final int PLATFORM_GAP = 4;
+
+    static final int FLOATS_PER_QUAD = 20;
+    static final int MAX_QUADS = COLUMNS * MAX_GROUND + WALL_ROWS + MAX_PLATFORMS * MAX_PLATFORM_WIDTH;
+    static final int MAX_SHAPES = 1 + MAX_PLATFORMS;
+    /** The ground chain has two points per step plus the ends and the wall, a platform is a box. */
+    static final int MAX_SHAPE_FLOATS = (2 * COLUMNS + 2) * 2 + MAX_PLATFORMS * 8;
+    static final int MAX_LIGHTS = 1 + MAX_PLATFORMS;
+    static final int MAX_ANCHORS = MAX_PLATFORMS;
+
+    private static final int SALT_EDGE = 1;
+    private static final int SALT_PLATFORMS = 2;
+    private static final int SALT_RUNS = 16;
+
+    private static final float COLOR = Color.WHITE.toFloatBits();
+
+    private final long seed;
+    private final float[] tileUVs;
+
+    /**
+     * @param tileUVs u, v, u2, v2 of each tile by global id, up to {@link #MAX_TILE_ID}. Not modified.
+     */
+    public ChunkGenerator(long seed, float[] tileUVs) {
+        this.seed = seed;
+        this.tileUVs = tileUVs;
+    }
+
+    /**
+     * Fills the chunk with the tiles, shapes, lights and anchors of the chunk at index, in metres.
+     */
+    void generate(EndlessChunk chunk, int index) {
+        chunk.quadCount = 0;
+        chunk.shapeCount = 0;
+        chunk.shapeStarts[0] = 0;
+        chunk.shapeStarts[1] = 0;
+        chunk.lightCount = 0;
+        chunk.anchorCount = 0;
+        float originX = index * WIDTH;
+        int[] heights = chunk.heights;
+        fillHeights(heights, index);
+
+        for (int column = 0; column < COLUMNS; column++) {
+            for (int row = 0; row < heights[column]; row++) {
+                addTile(chunk, originX + column * TILE_SIZE, row * TILE_SIZE,
+                        row == heights[column] - 1 ? TILE_SURFACE : TILE_FILL);
+            }
+        }
+
+        //The ground outline as one chain, the way a polyline in the map becomes a ChainShape
+        if (index == 0) {
+            for (int row = 0; row < WALL_ROWS; row++) {
+                addTile(chunk, originX - TILE_SIZE, row * TILE_SIZE, TILE_FILL);
+            }
+            addPoint(chunk, originX, WALL_ROWS * TILE_SIZE);
+        }
+        addPoint(chunk, originX, heights[0] * TILE_SIZE);
+        for (int column = 1; column < COLUMNS; column++) {
+            if (heights[column] != heights[column - 1]) {
+                addPoint(chunk, originX + column * TILE_SIZE, heights[column - 1] * TILE_SIZE);
+                addPoint(chunk, originX + column * TILE_SIZE, heights[column] * TILE_SIZE);
+            }
+        }
+        addPoint(chunk, originX + WIDTH, heights[COLUMNS - 1] * TILE_SIZE);
+        endShape(chunk, true);
+
+        //A run is at least two columns, so the neighbours stay flat for a tile past the shared edge height.
+        //Without these the player catches on the seam between two chains.
+        chunk.hasPrevGhost = index > 0;
+        chunk.groundGhosts[0] = originX - TILE_SIZE;
+        chunk.groundGhosts[1] = edgeHeight(index) * TILE_SIZE;
+        chunk.groundGhosts[2] = originX + WIDTH + TILE_SIZE;
+        chunk.groundGhosts[3] = edgeHeight(index + 1) * TILE_SIZE;
+
+        int middle = COLUMNS / 2;
+        addLight(chunk, originX + middle * TILE_SIZE, (heights[middle] + 2) * TILE_SIZE);
+
+        int platforms = random(index, SALT_PLATFORMS, MAX_PLATFORMS + 1);
+        int span = COLUMNS / MAX_PLATFORMS;
+        for (int i = 0; i < platforms; i++) {
+            int start = i * span + 1 + random(index, SALT_PLATFORMS + 1 + i * 3, 2);
+            int width = MIN_PLATFORM_WIDTH + random(index, SALT_PLATFORMS + 2 + i * 3, MAX_PLATFORM_WIDTH - MIN_PLATFORM_WIDTH + 1);
+            int ground = 0;
+            for (int column = start; column < start + width; column++) {
+                ground = Math.max(ground, heights[column]);
+            }
+            int row = ground + PLATFORM_GAP + random(index, SALT_PLATFORMS + 3 + i * 3, 2);
+            addPlatform(chunk, originX + start * TILE_SIZE, row * TILE_SIZE, width);
+        }
+    }
+
+    /**
+     * Walks the ground height up and down in runs, then bends the end of the walk to the height at the right edge.
+     */
+    private void fillHeights(int[] heights, int index) {
+        int height = edgeHeight(index);
+        int salt = SALT_RUNS;
+        int column = 0;
+        while (column < COLUMNS) {
+            int length = MIN_RUN + random(index, salt++, MAX_RUN - MIN_RUN + 1);
+            for (int i = 0; i < length && column < COLUMNS; i++) {
+                heights[column++] = height;
+            }
+            height = clamp(height + random(index, salt++, 3) - 1, MIN_GROUND, MAX_GROUND);
+        }
+
+        heights[COLUMNS - 1] = edgeHeight(index + 1);
+        for (int i = COLUMNS - 2; i >= 0; i--) {
+            heights[i] = clamp(heights[i], heights[i + 1] - 1, heights[i + 1] + 1);
+        }
+    }
+
+    private int edgeHeight(int index) {
+        if (index == 0) {
+            return START_GROUND;
+        }
+        return MIN_GROUND + random(index, SALT_EDGE, MAX_GROUND - MIN_GROUND + 1);
+    }
+
+    private void addPlatform(EndlessChunk chunk, float x, float y, int width) {
+        for (int i = 0; i < width; i++) {
+            int tile = i == 0 ? TILE_PLATFORM_LEFT : (i == width - 1 ? TILE_PLATFORM_RIGHT : TILE_SURFACE);
+            addTile(chunk, x + i * TILE_SIZE, y, tile);
+        }
+
+        //Same box as a rectangle in the map
+        float x2 = x + width * TILE_SIZE;
+        float y2 = y + TILE_SIZE;
+        addPoint(chunk, x, y);
+        addPoint(chunk, x2, y);
+        addPoint(chunk, x2, y2);
+        addPoint(chunk, x, y2);
+        endShape(chunk, false);
+
+        float middle = (x + x2) / 2;
+        chunk.anchors[chunk.anchorCount * 2] = middle;
+        chunk.anchors[chunk.anchorCount * 2 + 1] = y;
+        chunk.anchorCount++;
+        addLight(chunk, middle, y - TILE_SIZE / 2);
+    }
+
+    private void addTile(EndlessChunk chunk, float x, float y, int id) {
+        float u = tileUVs[id * 4];
+        float v = tileUVs[id * 4 + 1];
+        float u2 = tileUVs[id * 4 + 2];
+        float v2 = tileUVs[id * 4 + 3];
+        float x2 = x + TILE_SIZE;
+        float y2 = y + TILE_SIZE;
+
+        float[] vertices = chunk.vertices;
+        int i = chunk.quadCount * FLOATS_PER_QUAD;
+        vertices[i++] = x;
+        vertices[i++] = y;
+        vertices[i++] = COLOR;
+        vertices[i++] = u;
+        vertices[i++] = v2;
+
+        vertices[i++] = x;
+        vertices[i++] = y2;
+        vertices[i++] = COLOR;
+        vertices[i++] = u;
+        vertices[i++] = v;
+
+        vertices[i++] = x2;
+        vertices[i++] = y2;
+        vertices[i++] = COLOR;
+        vertices[i++] = u2;
+        vertices[i++] = v;
+
+        vertices[i++] = x2;
+        vertices[i++] = y;
+        vertices[i++] = COLOR;
+        vertices[i++] = u2;
+        vertices[i] = v2;
+        chunk.quadCount++;
+    }
+
+    private static void addPoint(EndlessChunk chunk, float x, float y) {
+        //The start of the next shape is the end of the open one
+        int end = chunk.shapeStarts[chunk.shapeCount + 1];
+        chunk.shapeVertices[end] = x;
+        chunk.shapeVertices[end + 1] = y;
+        chunk.shapeStarts[chunk.shapeCount + 1] = end + 2;
+    }
+
+    private static void endShape(EndlessChunk chunk, boolean chain) {
+        chunk.shapeIsChain[chunk.shapeCount] = chain;
+        chunk.shapeCount++;
+        chunk.shapeStarts[chunk.shapeCount + 1] = chunk.shapeStarts[chunk.shapeCount];
+    }
+
+    private static void addLight(EndlessChunk chunk, float x, float y) {
+        chunk.lightPositions[chunk.lightCount * 2] = x;
+        chunk.lightPositions[chunk.lightCount * 2 + 1] = y;
+        chunk.lightCount++;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return value < min ? min : (value > max ? max : value);
+    }
+
+    /**
+     * @return a number from 0 to bound - 1 that only depends on the seed, the chunk and the salt (SplitMix64).
+     */
+    private int random(int index, int salt, int bound) {
+        long z = seed + index * 0x9E3779B97F4A7C15L + salt * 0x632BE59BD9B4E019L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (int) ((z >>> 1) % bound);
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.endless;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTile;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.ChainShape;
+import com.badlogic.gdx.physics.box2d.PolygonShape;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.Logger;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.badlogic.gdx.utils.async.AsyncExecutor;
+import com.nickschatz.ninjaball.physics.AnchorSource;
+import com.nickschatz.ninjaball.util.MapBodyManager;
+import com.nickschatz.ninjaball.util.TiledLightManager;
+
+/**
+ * Keeps the endless level around the player: a fixed number of chunks, from one behind the player to
+ * a few ahead. Chunks ahead are generated on a worker thread by {@link ChunkGenerator}, down to the
+ * vertex data of the tiles and the points of the collision shapes. What has to happen on the render
+ * thread, creating the Box2D bodies, uploading the tile mesh and adding the lights, is done a piece at
+ * a time in {@link #update} until the frame's budget is used up. Chunks that fall behind go back to
+ * the pool, so memory doesn't grow with the distance travelled.
+ *
+ * On the HTML backend AsyncExecutor runs the task as soon as it is submitted, so generation happens in
+ * the frame that asks for the chunk.
+ */
+public class ChunkStreamer implements AnchorSource, Disposable {
+    private static final int CHUNKS_BEHIND = 1;
+    private static final int CHUNKS_AHEAD = 2;
+    private static final int CHUNK_COUNT = CHUNKS_BEHIND + 1 + CHUNKS_AHEAD;
+    /** How close the rope has to pass an anchor to catch it. */
+    private static final float ANCHOR_RADIUS = 1.5f;
+    private static final String MATERIAL = "default";
+    private static final int LIGHT_RAYS = 64;
+    private static final float LIGHT_DISTANCE = 8;
+    private static final Color LIGHT_COLOR = new Color(1f, 0.8f, 0.5f, 1);
+
+    private final Logger log;
+    private final MapBodyManager mapBodies;
+    private final TiledLightManager lightManager;
+    private final AsyncExecutor executor = new AsyncExecutor(1);
+    private final EndlessChunk[] chunks = new EndlessChunk[CHUNK_COUNT];
+    private final Texture texture;
+    private final ShaderProgram shader;
+    private final PolygonShape polygon = new PolygonShape();
+    /** Exactly sized copies of the chain points by length, ChainShape takes a whole array. */
+    private final float[][] chainPoints = new float[ChunkGenerator.MAX_SHAPE_FLOATS + 1][];
+    private int chunksCommitted = 0;
+
+    /**
+     * @param map the start of the level, its tileset has the tiles the chunks are made of.
+     */
+    public ChunkStreamer(MapBodyManager mapBodies, TiledLightManager lightManager, TiledMap map, long seed, int logLevel) {
+        this.mapBodies = mapBodies;
+        this.lightManager = lightManager;
+        log = new Logger("ChunkStreamer", logLevel);
+
+        Texture tileTexture = null;
+        float[] tileUVs = new float[(ChunkGenerator.MAX_TILE_ID + 1) * 4];
+        for (int id : ChunkGenerator.TILE_IDS) {
+            TiledMapTile tile = map.getTileSets().getTile(id);
+            if (tile == null) {
+                throw new GdxRuntimeException("tile " + id + " is missing from the tileset");
+            }
+            TextureRegion region = tile.getTextureRegion();
+            tileTexture = region.getTexture();
+            tileUVs[id * 4] = region.getU();
+            tileUVs[id * 4 + 1] = region.getV();
+            tileUVs[id * 4 + 2] = region.getU2();
+            tileUVs[id * 4 + 3] = region.getV2();
+        }
+        texture = tileTexture;
+        shader = SpriteBatch.createDefaultShader();
+
+        //Every slot draws quads, so they share the index pattern of SpriteBatch
+        short[] indices = new short[ChunkGenerator.MAX_QUADS * 6];
+        for (int i = 0, vertex = 0; i < indices.length; i += 6, vertex += 4) {
+            indices[i] = (short) vertex;
+            indices[i + 1] = (short) (vertex + 1);
+            indices[i + 2] = (short) (vertex + 2);
+            indices[i + 3] = (short) (vertex + 2);
+            indices[i + 4] = (short) (vertex + 3);
+            indices[i + 5] = (short) vertex;
+        }
+        ChunkGenerator generator = new ChunkGenerator(seed, tileUVs);
+        for (int i = 0; i < CHUNK_COUNT; i++) {
+            Mesh mesh = new Mesh(true, ChunkGenerator.MAX_QUADS * 4, indices.length,
+                    new VertexAttribute(VertexAttributes.Usage.Position, 2, ShaderProgram.POSITION_ATTRIBUTE),
+                    new VertexAttribute(VertexAttributes.Usage.ColorPacked, 4, ShaderProgram.COLOR_ATTRIBUTE),
+                    new VertexAttribute(VertexAttributes.Usage.TextureCoordinates, 2, ShaderProgram.TEXCOORD_ATTRIBUTE + "0"));
+            mesh.setIndices(indices);
+            chunks[i] = new EndlessChunk(generator, mesh);
+        }
+        log.info(CHUNK_COUNT + " chunks of " + ChunkGenerator.MAX_QUADS + " tiles, seed " + seed);
+    }
+
+    /**
+     * Drops the chunks the player has left, asks for the ones that are missing and commits finished
+     * chunks until budgetNanos have passed. At least one piece of work is done each call.
+     *
+     * @param x the player, in metres.
+     */
+    public void update(float x, long budgetNanos) {
+        long start = TimeUtils.nanoTime();
+        int current = chunkAt(x);
+        int first = Math.max(0, current - CHUNKS_BEHIND);
+        int last = first + CHUNK_COUNT - 1;
+
+        for (EndlessChunk chunk : chunks) {
+            if (chunk.state == EndlessChunk.GENERATING && chunk.result.isDone()) {
+                chunk.result.get();
+                chunk.result = null;
+                chunk.state = EndlessChunk.COMMITTING;
+                chunk.commitStep = 0;
+            }
+            //A chunk that is still being generated is held by the worker until it is done
+            if (chunk.state != EndlessChunk.FREE && chunk.state != EndlessChunk.GENERATING &&
+                    (chunk.index < first || chunk.index > last)) {
+                release(chunk);
+            }
+        }
+
+        for (int index = first; index <= last; index++) {
+            if (find(index) != null) {
+                continue;
+            }
+            EndlessChunk chunk = find(-1);
+            if (chunk == null) {
+                break;
+            }
+            chunk.index = index;
+            chunk.state = EndlessChunk.GENERATING;
+            chunk.result = executor.submit(chunk);
+        }
+
+        //Nearest first, so the chunk under the player is never waiting behind one further ahead
+        EndlessChunk next;
+        while ((next = nearestCommitting(current)) != null) {
+            commitStep(next);
+            if (TimeUtils.nanoTime() - start >= budgetNanos) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return whether the chunk at x is complete, the player shouldn't move before it is.
+     */
+    public boolean isLoaded(float x) {
+        EndlessChunk chunk = find(chunkAt(x));
+        return chunk != null && chunk.state == EndlessChunk.LIVE;
+    }
+
+    private static int chunkAt(float x) {
+        return Math.max(0, (int) Math.floor(x / ChunkGenerator.WIDTH));
+    }
+
+    /**
+     * @param index -1 for a free slot.
+     */
+    private EndlessChunk find(int index) {
+        for (EndlessChunk chunk : chunks) {
+            if (index < 0 ? chunk.state == EndlessChunk.FREE : chunk.state != EndlessChunk.FREE && chunk.index == index) {
+                return chunk;
+            }
+        }
+        return null;
+    }
+
+    private EndlessChunk nearestCommitting(int index) {
+        EndlessChunk nearest = null;
+        for (EndlessChunk chunk : chunks) {
+            if (chunk.state == EndlessChunk.COMMITTING &&
+                    (nearest == null || Math.abs(chunk.index - index) < Math.abs(nearest.index - index))) {
+                nearest = chunk;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * One piece of a commit: a body per step, then the mesh upload, then the lights and anchors.
+     */
+    private void commitStep(EndlessChunk chunk) {
+        int step = chunk.commitStep++;
+        if (step < chunk.shapeCount) {
+            int start = chunk.shapeStarts[step];
+            int length = chunk.shapeStarts[step + 1] - start;
+            if (chunk.shapeIsChain[step]) {
+                float[] points = chainPoints[length];
+                if (points == null) {
+                    points = new float[length];
+                    chainPoints[length] = points;
+                }
+                System.arraycopy(chunk.shapeVertices, start, points, 0, length);
+                ChainShape chain = new ChainShape();
+                chain.createChain(points);
+                if (chunk.hasPrevGhost) {
+                    chain.setPrevVertex(chunk.groundGhosts[0], chunk.groundGhosts[1]);
+                }
+                chain.setNextVertex(chunk.groundGhosts[2], chunk.groundGhosts[3]);
+                chunk.bodies[chunk.bodyCount++] = mapBodies.createBody(chain, MATERIAL);
+                chain.dispose();
+            }
+            else {
+                polygon.set(chunk.shapeVertices, start, length);
+                chunk.bodies[chunk.bodyCount++] = mapBodies.createBody(polygon, MATERIAL);
+            }
+        }
+        else if (step == chunk.shapeCount) {
+            chunk.mesh.setVertices(chunk.vertices, 0, chunk.quadCount * ChunkGenerator.FLOATS_PER_QUAD);
+            chunk.meshQuads = chunk.quadCount;
+        }
+        else {
+            for (int i = 0; i < chunk.lightCount; i++) {
+                TiledLightManager.LightDef light = new TiledLightManager.LightDef(LIGHT_RAYS, LIGHT_COLOR, LIGHT_DISTANCE,
+                        chunk.lightPositions[i * 2], chunk.lightPositions[i * 2 + 1]);
+                lightManager.addLight(light);
+                chunk.lights[chunk.lightsAdded++] = light;
+            }
+            chunk.state = EndlessChunk.LIVE;
+            chunksCommitted++;
+            log.debug("chunk " + chunk.index + " live, " + chunk.bodyCount + " bodies, " + chunk.meshQuads + " tiles, " +
+                    chunk.lightsAdded + " lights, " + chunksCommitted + " committed so far");
+        }
+    }
+
+    /**
+     * Takes back whatever part of the chunk was committed and frees the slot.
+     */
+    private void release(EndlessChunk chunk) {
+        for (int i = 0; i < chunk.bodyCount; i++) {
+            mapBodies.destroyBody(chunk.bodies[i]);
+            chunk.bodies[i] = null;
+        }
+        chunk.bodyCount = 0;
+        for (int i = 0; i < chunk.lightsAdded; i++) {
+            lightManager.removeLight(chunk.lights[i]);
+            chunk.lights[i] = null;
+        }
+        chunk.lightsAdded = 0;
+        chunk.meshQuads = 0;
+        chunk.state = EndlessChunk.FREE;
+    }
+
+    /**
+     * Draws the tiles of every chunk that has been uploaded. Call outside of a batch.
+     */
+    public void render(Matrix4 combined) {
+        Gdx.gl.glEnable(GL20.GL_BLEND);
+        Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+        texture.bind(0);
+        shader.begin();
+        shader.setUniformMatrix("u_projTrans", combined);
+        shader.setUniformi("u_texture", 0);
+        for (EndlessChunk chunk : chunks) {
+            if (chunk.meshQuads > 0) {
+                chunk.mesh.render(shader, GL20.GL_TRIANGLES, 0, chunk.meshQuads * 6);
+            }
+        }
+        shader.end();
+        Gdx.gl.glDisable(GL20.GL_BLEND);
+    }
+
+    /**
+     * Rope anchors of the committed chunks, the geometry itself doesn't catch the rope.
+     */
+    @Override
+    public float rayCast(float x1, float y1, float x2, float y2, Vector2 hit) {
+        float dx = x2 - x1;
+        float dy = y2 - y1;
+        float lengthSquared = dx * dx + dy * dy;
+        if (lengthSquared == 0) {
+            return -1;
+        }
+        float best = -1;
+        for (EndlessChunk chunk : chunks) {
+            if (chunk.state != EndlessChunk.LIVE) {
+                continue;
+            }
+            for (int i = 0; i < chunk.anchorCount; i++) {
+                float ax = chunk.anchors[i * 2];
+                float ay = chunk.anchors[i * 2 + 1];
+                float t = ((ax - x1) * dx + (ay - y1) * dy) / lengthSquared;
+                if (t < 0 || t > 1 || (best >= 0 && t >= best)) {
+                    continue;
+                }
+                float px = x1 + dx * t - ax;
+                float py = y1 + dy * t - ay;
+                if (px * px + py * py <= ANCHOR_RADIUS * ANCHOR_RADIUS) {
+                    best = t;
+                    if (hit != null) {
+                        hit.set(ax, ay);
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Waits for the worker and frees the meshes. Bodies and lights go with the world and the light manager.
+     */
+    @Override
+    public void dispose() {
+        executor.dispose();
+        for (EndlessChunk chunk : chunks) {
+            chunk.mesh.dispose();
+        }
+        shader.dispose();
+        polygon.dispose();
+    }
+}
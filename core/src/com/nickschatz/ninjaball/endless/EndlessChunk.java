@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.endless;
+
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.utils.async.AsyncResult;
+import com.badlogic.gdx.utils.async.AsyncTask;
+import com.nickschatz.ninjaball.util.TiledLightManager;
+
+/**
+ * One slot of the endless level. The generated part is written by {@link ChunkGenerator} on the worker
+ * thread and only read on the render thread once the task is done; everything below it belongs to the
+ * render thread. All arrays are sized for the largest chunk, so a slot is reused for every chunk it holds.
+ */
+class EndlessChunk implements AsyncTask<EndlessChunk> {
+    static final int FREE = 0;
+    static final int GENERATING = 1;
+    static final int COMMITTING = 2;
+    static final int LIVE = 3;
+
+    private final ChunkGenerator generator;
+
+    //Generated
+    /** Quads as x, y, packed colour, u, v per corner, in the vertex format of SpriteBatch. */
+    final float[] vertices = new float[ChunkGenerator.MAX_QUADS * ChunkGenerator.FLOATS_PER_QUAD];
+    int quadCount;
+    /** Collision shapes in metres, shape i is the points from shapeStarts[i] to shapeStarts[i + 1]. */
+    final float[] shapeVertices = new float[ChunkGenerator.MAX_SHAPE_FLOATS];
+    /** One more than needed, the generator keeps the start of the shape after the last there. */
+    final int[] shapeStarts = new int[ChunkGenerator.MAX_SHAPES + 2];
+    /** A chain like a map polyline if set, otherwise a polygon. */
+    final boolean[] shapeIsChain = new boolean[ChunkGenerator.MAX_SHAPES];
+    int shapeCount;
+    /** Ghost vertices of the ground chain, where the neighbouring chunks' ground goes on: prev x, y, next x, y. */
+    final float[] groundGhosts = new float[4];
+    /** False for the first chunk, whose chain starts at the top of the wall. */
+    boolean hasPrevGhost;
+    final float[] lightPositions = new float[ChunkGenerator.MAX_LIGHTS * 2];
+    int lightCount;
+    final float[] anchors = new float[ChunkGenerator.MAX_ANCHORS * 2];
+    int anchorCount;
+    /** Scratch for the generator. */
+    final int[] heights = new int[ChunkGenerator.COLUMNS];
+
+    //Render thread
+    int index;
+    int state = FREE;
+    AsyncResult<EndlessChunk> result;
+    /** How far the commit has come, see {@link ChunkStreamer}. */
+    int commitStep;
+    final Mesh mesh;
+    int meshQuads;
+    final Body[] bodies = new Body[ChunkGenerator.MAX_SHAPES];
+    int bodyCount;
+    final TiledLightManager.LightDef[] lights = new TiledLightManager.LightDef[ChunkGenerator.MAX_LIGHTS];
+    int lightsAdded;
+
+    EndlessChunk(ChunkGenerator generator, Mesh mesh) {
+        this.generator = generator;
+        this.mesh = mesh;
+    }
+
+    @Override
+    public EndlessChunk call() throws Exception {
+        generator.generate(this, index);
+        return this;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.entity;
+
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.maps.Map;
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.MapObject;
+import com.badlogic.gdx.maps.MapProperties;
+import com.badlogic.gdx.maps.objects.CircleMapObject;
+import com.badlogic.gdx.maps.objects.EllipseMapObject;
+import com.badlogic.gdx.maps.objects.RectangleMapObject;
+import com.badlogic.gdx.math.Circle;
+import com.badlogic.gdx.math.Ellipse;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.physics.box2d.*;
+import com.badlogic.gdx.utils.Logger;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.nickschatz.ninjaball.util.UserData;
+
+/**
+ * Spawns {@link EntityStore} entities from a map object layer, picking the kind from the "type" property
+ * the same way {@link com.nickschatz.ninjaball.util.MapBodyManager} does for exits and signs.
+ *
+ * Supported properties: "type" (pickup, enemy or hazard), "sprite" (atlas region name),
+ * "vx"/"vy" (hazard speed in pixels per second) and "range" (hazard patrol distance in pixels).
+ */
+public class EntitySpawner {
+    private static final String[] DEFAULT_SPRITES = {"ropeKnot", "ball64x64", "ball64x64"};
+
+    private final Logger logger;
+    private final World world;
+    private final EntityStore store;
+    private final float units;
+    private final TextureAtlas atlas;
+    private final ObjectIntMap<String> spriteIds = new ObjectIntMap<String>();
+
+    /**
+     * @param atlas sprite source, may be null when nothing is rendered.
+     */
+    public EntitySpawner(World world, EntityStore store, float unitsPerPixel, TextureAtlas atlas, int loggingLevel) {
+        this.logger = new Logger("EntitySpawner", loggingLevel);
+        this.world = world;
+        this.store = store;
+        this.units = unitsPerPixel;
+        this.atlas = atlas;
+    }
+
+    /**
+     * @return number of entities spawned.
+     */
+    public int createEntities(Map map, String layerName) {
+        MapLayer layer = map.getLayers().get(layerName);
+        if (layer == null) {
+            logger.info("layer " + layerName + " does not exist, no entities");
+            return 0;
+        }
+
+        int spawned = 0;
+        for (MapObject object : layer.getObjects()) {
+            MapProperties properties = object.getProperties();
+            String typeName = properties.get("type", "none", String.class);
+            int type = EntityStore.typeForName(typeName);
+            if (type < 0) {
+                logger.error("unknown entity type " + typeName);
+                continue;
+            }
+
+            float x, y, radius;
+            if (object instanceof RectangleMapObject) {
+                Rectangle rectangle = ((RectangleMapObject) object).getRectangle();
+                x = rectangle.x + rectangle.width / 2;
+                y = rectangle.y + rectangle.height / 2;
+                radius = Math.min(rectangle.width, rectangle.height) / 2;
+            }
+            else if (object instanceof EllipseMapObject) {
+                Ellipse ellipse = ((EllipseMapObject) object).getEllipse();
+                x = ellipse.x + ellipse.width / 2;
+                y = ellipse.y + ellipse.height / 2;
+                radius = Math.min(ellipse.width, ellipse.height) / 2;
+            }
+            else if (object instanceof CircleMapObject) {
+                Circle circle = ((CircleMapObject) object).getCircle();
+                x = circle.x;
+                y = circle.y;
+                radius = circle.radius;
+            }
+            else {
+                logger.error("unsupported entity shape " + object);
+                continue;
+            }
+
+            Body body = createBody(type, x / units, y / units, radius / units, properties);
+            int sprite = spriteId(properties.get("sprite", DEFAULT_SPRITES[type], String.class));
+            store.create(type, body, sprite, radius / units, getFloat(properties, "range") / units);
+            spawned++;
+        }
+        logger.info("spawned " + spawned + " entities from " + layerName);
+        return spawned;
+    }
+
+    private Body createBody(int type, float x, float y, float radius, MapProperties properties) {
+        BodyDef bodyDef = new BodyDef();
+        bodyDef.position.set(x, y);
+        if (type == EntityStore.TYPE_ENEMY) {
+            bodyDef.type = BodyDef.BodyType.DynamicBody;
+            bodyDef.gravityScale = 0; //Gets the rotated gravity from EntityStore.applyGravity
+        }
+        else if (type == EntityStore.TYPE_HAZARD) {
+            bodyDef.type = BodyDef.BodyType.KinematicBody;
+            bodyDef.linearVelocity.set(getFloat(properties, "vx") / units, getFloat(properties, "vy") / units);
+        }
+        else {
+            bodyDef.type = BodyDef.BodyType.StaticBody;
+        }
+        Body body = world.createBody(bodyDef);
+
+        CircleShape shape = new CircleShape();
+        shape.setRadius(radius);
+        FixtureDef fixtureDef = new FixtureDef();
+        fixtureDef.shape = shape;
+        fixtureDef.density = 1f;
+        fixtureDef.friction = 0.4f;
+        fixtureDef.isSensor = type != EntityStore.TYPE_ENEMY;
+        body.createFixture(fixtureDef).setUserData(UserData.ENTITY);
+        shape.dispose();
+        return body;
+    }
+
+    private int spriteId(String name) {
+        int id = spriteIds.get(name, -1);
+        if (id < 0) {
+            TextureRegion region = atlas == null ? null : atlas.findRegion(name);
+            if (atlas != null && region == null) {
+                logger.error("sprite " + name + " not in atlas");
+            }
+            id = store.registerSprite(region);
+            spriteIds.put(name, id);
+        }
+        return id;
+    }
+
+    private float getFloat(MapProperties properties, String key) {
+        String value = properties.get(key, "0", String.class);
+        try {
+            return Float.parseFloat(value);
+        } catch (NumberFormatException e) {
+            logger.error("property " + key + " is not a number: " + value);
+            return 0;
+        }
+    }
+}
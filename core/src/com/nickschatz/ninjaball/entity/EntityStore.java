@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.entity;
+
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.nickschatz.ninjaball.render.RenderQueue;
+
+/**
+ * Pickups, enemies and hazards, stored as parallel primitive arrays instead of one object per entity.
+ * Live entities are packed at the front of the arrays so every system is a linear loop over {@link #getCount()}.
+ * Removing swaps the last entity into the gap; ids stay stable through an id to index table, and freed ids and
+ * array slots are reused instead of growing the arrays.
+ */
+public class EntityStore {
+    public static final int TYPE_PICKUP = 0;
+    public static final int TYPE_ENEMY = 1;
+    public static final int TYPE_HAZARD = 2;
+    private static final String[] TYPE_NAMES = {"pickup", "enemy", "hazard"};
+
+    private final World world;
+
+    //Components, indexed by dense index
+    private float[] x;
+    private float[] y;
+    private float[] vx;
+    private float[] vy;
+    private float[] radius;
+    private float[] originX;
+    private float[] originY;
+    private float[] range;
+    private int[] types;
+    private int[] sprites;
+    private int[] ids;
+    private int[] spawnIndices;
+    private Body[] bodies;
+    private int count = 0;
+    //Entities created since the last clear, so the same map always hands out the same spawn indices
+    private int spawned = 0;
+
+    //id -> dense index, -1 for free ids
+    private int[] indexOfId;
+    private final IntArray freeIds = new IntArray();
+    private int nextId = 0;
+    private final IntArray pendingRemovals = new IntArray();
+
+    private final Array<TextureRegion> spriteTable = new Array<TextureRegion>();
+
+    public EntityStore(World world, int initialCapacity) {
+        this.world = world;
+        allocate(Math.max(initialCapacity, 8));
+        indexOfId = new int[x.length];
+    }
+
+    /**
+     * @return the type constant for a map object "type" property, or -1 if it is not an entity.
+     */
+    public static int typeForName(String name) {
+        for (int i = 0; i < TYPE_NAMES.length; i++) {
+            if (TYPE_NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param region may be null when nothing is rendered, e.g. in tools.
+     * @return sprite id to pass to {@link #create}.
+     */
+    public int registerSprite(TextureRegion region) {
+        spriteTable.add(region);
+        return spriteTable.size - 1;
+    }
+
+    /**
+     * Adds an entity. The store owns the body from now on and destroys it on removal.
+     *
+     * @param range distance from the spawn point after which a hazard turns around, 0 to never turn.
+     * @return the entity id, also stored as the body's user data.
+     */
+    public int create(int type, Body body, int sprite, float radius, float range) {
+        if (count == x.length) {
+            allocate((int) (x.length * 1.75f));
+        }
+        int id;
+        if (freeIds.size > 0) {
+            id = freeIds.pop();
+        }
+        else {
+            id = nextId++;
+            if (id == indexOfId.length) {
+                int[] newIndexOfId = new int[(int) (indexOfId.length * 1.75f)];
+                System.arraycopy(indexOfId, 0, newIndexOfId, 0, indexOfId.length);
+                indexOfId = newIndexOfId;
+            }
+        }
+
+        int i = count++;
+        Vector2 position = body.getPosition();
+        x[i] = position.x;
+        y[i] = position.y;
+        vx[i] = body.getLinearVelocity().x;
+        vy[i] = body.getLinearVelocity().y;
+        originX[i] = position.x;
+        originY[i] = position.y;
+        this.radius[i] = radius;
+        this.range[i] = range;
+        types[i] = type;
+        sprites[i] = sprite;
+        ids[i] = id;
+        spawnIndices[i] = spawned++;
+        bodies[i] = body;
+        indexOfId[id] = i;
+        body.setUserData(id);
+        return id;
+    }
+
+    /**
+     * Removes an entity right away. Not allowed inside {@link World#step}, use {@link #removeLater(int)} there.
+     */
+    public void remove(int id) {
+        int i = getIndex(id);
+        if (i < 0) {
+            return;
+        }
+        world.destroyBody(bodies[i]);
+
+        int last = --count;
+        if (i != last) {
+            x[i] = x[last];
+            y[i] = y[last];
+            vx[i] = vx[last];
+            vy[i] = vy[last];
+            radius[i] = radius[last];
+            originX[i] = originX[last];
+            originY[i] = originY[last];
+            range[i] = range[last];
+            types[i] = types[last];
+            sprites[i] = sprites[last];
+            ids[i] = ids[last];
+            spawnIndices[i] = spawnIndices[last];
+            bodies[i] = bodies[last];
+            indexOfId[ids[i]] = i;
+        }
+        bodies[last] = null;
+        indexOfId[id] = -1;
+        freeIds.add(id);
+    }
+
+    /**
+     * Queues a removal for {@link #flushRemovals()}, safe to call from contact callbacks.
+     */
+    public void removeLater(int id) {
+        if (getIndex(id) >= 0 && !pendingRemovals.contains(id)) {
+            pendingRemovals.add(id);
+        }
+    }
+
+    public void flushRemovals() {
+        for (int i = 0; i < pendingRemovals.size; i++) {
+            remove(pendingRemovals.get(i));
+        }
+        pendingRemovals.clear();
+    }
+
+    /**
+     * Pushes enemies along the rotated gravity, like the player.
+     *
+     * @param gravity acceleration, scaled by each body's mass.
+     */
+    public void applyGravity(Vector2 gravity) {
+        for (int i = 0; i < count; i++) {
+            if (types[i] == TYPE_ENEMY) {
+                Body body = bodies[i];
+                float mass = body.getMass();
+                body.applyForceToCenter(gravity.x * mass, gravity.y * mass, true);
+            }
+        }
+    }
+
+    /**
+     * Turns moving hazards around once they are further than their range from where they spawned.
+     */
+    public void patrol() {
+        for (int i = 0; i < count; i++) {
+            if (types[i] != TYPE_HAZARD || range[i] <= 0) {
+                continue;
+            }
+            float dx = x[i] - originX[i];
+            float dy = y[i] - originY[i];
+            //Only turn when moving away, so a hazard that overshot doesn't flip every step
+            if (dx * dx + dy * dy > range[i] * range[i] && dx * vx[i] + dy * vy[i] > 0) {
+                bodies[i].setLinearVelocity(-vx[i], -vy[i]);
+                vx[i] = -vx[i];
+                vy[i] = -vy[i];
+            }
+        }
+    }
+
+    /**
+     * Copies position and velocity back from the bodies after a world step.
+     */
+    public void syncFromBodies() {
+        for (int i = 0; i < count; i++) {
+            Body body = bodies[i];
+            Vector2 position = body.getPosition();
+            x[i] = position.x;
+            y[i] = position.y;
+            Vector2 velocity = body.getLinearVelocity();
+            vx[i] = velocity.x;
+            vy[i] = velocity.y;
+        }
+    }
+
+    public void draw(RenderQueue queue) {
+        for (int i = 0; i < count; i++) {
+            TextureRegion region = spriteTable.get(sprites[i]);
+            if (region == null) {
+                continue;
+            }
+            float r = radius[i];
+            queue.draw(RenderQueue.LAYER_ENTITIES, region, x[i] - r, y[i] - r, r, r, r * 2, r * 2, 1, 1, 0);
+        }
+    }
+
+    /**
+     * Removes every entity, destroying their bodies.
+     */
+    public void clear() {
+        while (count > 0) {
+            remove(ids[count - 1]);
+        }
+        pendingRemovals.clear();
+        spawned = 0;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return dense index of a live entity, or -1.
+     */
+    public int getIndex(int id) {
+        if (id < 0 || id >= nextId) {
+            return -1;
+        }
+        return indexOfId[id];
+    }
+
+    public int getType(int index) {
+        return types[index];
+    }
+
+    public float getX(int index) {
+        return x[index];
+    }
+
+    public float getY(int index) {
+        return y[index];
+    }
+
+    public int getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * @return how many entities were created before this one since the last {@link #clear()}.
+     */
+    public int getSpawnIndex(int index) {
+        return spawnIndices[index];
+    }
+
+    public Body getBody(int index) {
+        return bodies[index];
+    }
+
+    private void allocate(int capacity) {
+        x = grow(x, capacity);
+        y = grow(y, capacity);
+        vx = grow(vx, capacity);
+        vy = grow(vy, capacity);
+        radius = grow(radius, capacity);
+        originX = grow(originX, capacity);
+        originY = grow(originY, capacity);
+        range = grow(range, capacity);
+        types = grow(types, capacity);
+        sprites = grow(sprites, capacity);
+        ids = grow(ids, capacity);
+        spawnIndices = grow(spawnIndices, capacity);
+        Body[] newBodies = new Body[capacity];
+        if (bodies != null) {
+            System.arraycopy(bodies, 0, newBodies, 0, count);
+        }
+        bodies = newBodies;
+    }
+
+    private float[] grow(float[] array, int capacity) {
+        float[] newArray = new float[capacity];
+        if (array != null) {
+            System.arraycopy(array, 0, newArray, 0, count);
+        }
+        return newArray;
+    }
+
+    private int[] grow(int[] array, int capacity) {
+        int[] newArray = new int[capacity];
+        if (array != null) {
+            System.arraycopy(array, 0, newArray, 0, count);
+        }
+        return newArray;
+    }
+}
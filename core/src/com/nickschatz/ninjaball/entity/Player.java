@@ -23,26 +23,32 @@
 
 package com.nickschatz.ninjaball.entity;
 
-import com.badlogic.gdx.audio.Sound;
-import com.badlogic.gdx.graphics.Texture;
-import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.*;
+import com.nickschatz.ninjaball.Level;
 import com.nickschatz.ninjaball.Resources;
+import com.nickschatz.ninjaball.audio.AudioManager;
+import com.nickschatz.ninjaball.render.RenderQueue;
 import com.nickschatz.ninjaball.util.UserData;
 
 public class Player {
+    private static final float SENSOR_MARGIN = 0.125f;
+    /** Distance between rope segments in metres. Fixed, the swing changes with it. */
+    private static final float ROPE_RESOLUTION = 0.1875f;
+
     private Body myBody;
     private boolean canJump = true;
     private final float radius;
     private boolean hasRope = false;
-    private Texture ball;
+    private TextureRegion ball;
 
 
     private Rope rope;
 
-    private Sound jumpSound;
+    private AudioManager.Effect jumpEffect;
+    private AudioManager.Effect ropeEffect;
 
     public Player(World world, float x, float y, float radius) {
         this.radius = radius;
@@ -56,7 +62,7 @@ public class Player {
 // Create our body in the world using our body definition
         myBody = world.createBody(bodyDef);
 
-// Create a circle shape and set its radius to 6
+// Create a circle shape and set its radius
         CircleShape circle = new CircleShape();
         circle.setRadius(radius);
 
@@ -76,18 +82,28 @@ public class Player {
         circle.dispose();
 
         circle = new CircleShape();
-        circle.setRadius(radius + 4);
+        circle.setRadius(getSensorRadius());
         fixtureDef = new FixtureDef();
         fixtureDef.shape = circle;
         fixtureDef.isSensor = true;
         myBody.createFixture(fixtureDef).setUserData(UserData.PLAYER_SENSOR);
 
-        ball = Resources.get().get("data/ball64x64.png", Texture.class);
+        TextureAtlas atlas = Resources.getIfLoaded(Level.ATLAS, TextureAtlas.class);
+        ball = atlas == null ? null : atlas.findRegion("ball64x64");
 
         myBody.setUserData(this);
+    }
 
+    /**
+     * Without effects, as in the headless tools, the player is silent.
+     */
+    public void setEffects(AudioManager.Effect jumpEffect, AudioManager.Effect ropeEffect) {
+        this.jumpEffect = jumpEffect;
+        this.ropeEffect = ropeEffect;
+    }
 
-        jumpSound = Resources.get().get("data/sound/jump.wav", Sound.class);
+    AudioManager.Effect getRopeEffect() {
+        return ropeEffect;
     }
 
     public Body getBody() {
@@ -110,6 +126,13 @@ public class Player {
         return radius;
     }
 
+    /**
+     * @return radius of the sensor that detects ground and triggers.
+     */
+    public float getSensorRadius() {
+        return radius + SENSOR_MARGIN;
+    }
+
     public float getRotation() {
         return this.getBody().getAngle();
     }
@@ -117,7 +140,9 @@ public class Player {
     public void jump(Vector2 playerGrav) {
         if (canJump()) {
             myBody.applyLinearImpulse(playerGrav.cpy().rotate(180).scl(2), myBody.getWorldCenter(), true);
-            jumpSound.play();
+            if (jumpEffect != null) {
+                jumpEffect.play();
+            }
         }
     }
 
@@ -125,34 +150,55 @@ public class Player {
         return rope;
     }
 
-    public void throwRope(Vector2 playerGrav, World world) {
+    /**
+     * Throws a rope, or lets go of the current one.
+     *
+     * @param anchor where the rope hits, null if it misses.
+     */
+    public void throwRope(Vector2 anchor, Vector2 playerGrav, World world) {
         if (hasRope) {
-            hasRope = false;
+            removeRope();
+            return;
+        }
+        hasRope = true;
+        rope = new Rope(this, anchor, playerGrav, world, ROPE_RESOLUTION);
+    }
+
+    /**
+     * Replaces the current rope, used when restoring a {@link com.nickschatz.ninjaball.physics.WorldSnapshot}.
+     */
+    public void setRope(Rope rope) {
+        removeRope();
+        this.rope = rope;
+        hasRope = true;
+    }
 
+    public void removeRope() {
+        if (rope != null) {
             rope.destroy();
             rope = null;
-
-            return;
         }
-        hasRope = true;
-        rope = new Rope(this, playerGrav, world);
+        hasRope = false;
     }
 
     public boolean hasRope() {
         return hasRope;
     }
 
-    public void draw(SpriteBatch batch) {
-        int textureWidth = ball.getWidth();
-        int textureHeight = ball.getHeight();
+    public void draw(RenderQueue queue) {
+        drawBall(queue, getPosition().x, getPosition().y, (float) Math.toDegrees(getRotation()));
+    }
 
-        TextureRegion ballRegion = new TextureRegion(ball, 0, 0, textureWidth, textureHeight);
-        batch.draw(ballRegion,
-                getPosition().x - getRadius(),
-                getPosition().y - getRadius(),
+    /**
+     * Draws the ball sprite anywhere, also used for the ghost.
+     */
+    public void drawBall(RenderQueue queue, float x, float y, float degrees) {
+        queue.draw(RenderQueue.LAYER_ENTITIES, ball,
+                x - getRadius(),
+                y - getRadius(),
                 getRadius(),
                 getRadius(),
                 getRadius() * 2,
-                getRadius() * 2, 1, 1, (float) Math.toDegrees(getRotation()), false);
+                getRadius() * 2, 1, 1, degrees);
     }
 }
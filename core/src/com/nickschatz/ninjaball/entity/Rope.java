@@ -23,77 +23,104 @@
 
 package com.nickschatz.ninjaball.entity;
 
-import com.badlogic.gdx.audio.Sound;
-import com.badlogic.gdx.graphics.GL20;
-import com.badlogic.gdx.graphics.Texture;
-import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.*;
 import com.badlogic.gdx.physics.box2d.joints.DistanceJointDef;
 import com.badlogic.gdx.physics.box2d.joints.RopeJointDef;
+import com.nickschatz.ninjaball.Level;
 import com.nickschatz.ninjaball.Resources;
+import com.nickschatz.ninjaball.render.RenderQueue;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class Rope {
-    private boolean hasRope;
+    // Body params
+    private static final float RAD_BODY = 0.1875f;
+    private static final float DENSITY = 0.05f;
+    private static final float RESTITUTION = 0.5f;
+    private static final float FRICTION = 0.5f;
+    // Distance joint
+    private static final float DAMPING_RATIO = 1f;
+    private static final float FREQUENCY_HZ = 15;
+    // Rope joint
+    private static final float K_MAX_WIDTH = 1.1f;
+    // Drawing
+    private static final float WIDTH = 0.1875f;
+    private static final float KNOT_SCALE = 0.00625f;
+
     private List<Body> ropeBodies;
     private List<Joint> ropeJoints;
-    private Texture ropeKnotTex;
-    private Texture ropeTex;
+    private TextureRegion ropeKnotRegion;
+    private TextureRegion ropeRegion;
     private Player thePlayer;
     private World world;
-    private Sound ropeSound;
+    private float segmentLength;
+    private float playerLinkLength;
 
-    public Rope(Player thePlayer, Vector2 playerGrav, World world) {
-        this.thePlayer = thePlayer;
-        this.world = world;
+    /**
+     * @param anchor where the rope hit the level, null if the throw missed.
+     * @param distFactor distance between rope segments in metres, the resolution of the rope.
+     */
+    public Rope(Player thePlayer, Vector2 anchor, Vector2 playerGrav, World world, float distFactor) {
+        this(thePlayer, world);
 
-        ropeTex = Resources.get().get("data/rope.png", Texture.class);
-        ropeKnotTex = Resources.get().get("data/ropeKnot.png", Texture.class);
-        ropeKnotTex.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
+        if (anchor == null) {
+            return;
+        }
+        Vector2 ropeAnchorPos = anchor.cpy();
 
-        ropeSound = Resources.get().get("data/sound/rope.wav", Sound.class);
+        if (thePlayer.getRopeEffect() != null) {
+            thePlayer.getRopeEffect().play();
+        }
 
-        final Vector2 ropeAnchorPos = new Vector2(0,0);
+        int countBodyInChain = (int) (thePlayer.getPosition().dst(ropeAnchorPos) / distFactor);
+        float[] positions = new float[countBodyInChain * 2];
+        Vector2 step = playerGrav.cpy().nor().scl(distFactor);
+        Vector2 lastPos = ropeAnchorPos; //set position first body
+        for (int k = 0; k < countBodyInChain; k++) {
+            positions[k * 2] = lastPos.x;
+            positions[k * 2 + 1] = lastPos.y;
+            lastPos.add(step);
+        }
+        float playerLink = 0;
+        if (countBodyInChain > 0) {
+            playerLink = thePlayer.getPosition().dst(positions[positions.length - 2], positions[positions.length - 1]);
+        }
+        createChain(positions, 0, 2, countBodyInChain, distFactor, playerLink);
+    }
 
-        world.rayCast(new RayCastCallback() {
-                          @Override
-                          public float reportRayFixture(Fixture fixture, Vector2 point, Vector2 normal, float fraction) {
-                              ropeAnchorPos.set(point);
+    /**
+     * Rebuilds a rope from saved segment positions, see {@link com.nickschatz.ninjaball.physics.WorldSnapshot}.
+     *
+     * @param positions x and y of every segment, starting at the anchor.
+     * @param stride number of floats from one segment to the next.
+     */
+    public Rope(Player thePlayer, World world, float[] positions, int offset, int count,
+                float segmentLength, float playerLinkLength, int stride) {
+        this(thePlayer, world);
+        createChain(positions, offset, stride, count, segmentLength, playerLinkLength);
+    }
 
-                              return fraction;
-                          }
-                      },
-                thePlayer.getPosition(),
-                thePlayer.getPosition().cpy().add(playerGrav.cpy().rotate(180).nor().scl(300)));
-        if (ropeAnchorPos.len() == 0) {
-            return;
-        }
+    private Rope(Player thePlayer, World world) {
+        this.thePlayer = thePlayer;
+        this.world = world;
 
-        ropeSound.play();
+        TextureAtlas atlas = Resources.getIfLoaded(Level.ATLAS, TextureAtlas.class);
+        if (atlas != null) {
+            ropeRegion = atlas.findRegion("rope");
+            ropeKnotRegion = atlas.findRegion("ropeKnot");
+        }
+    }
 
-        hasRope = !hasRope;
+    private void createChain(float[] positions, int offset, int stride, int countBodyInChain, float segmentLength, float playerLinkLength) {
+        this.segmentLength = segmentLength;
+        this.playerLinkLength = playerLinkLength;
         ropeBodies = new ArrayList<Body>();
         ropeJoints = new ArrayList<Joint>();
 
-        int distFactor = 6; //The resolution of the rope
-
-        Vector2 lastPos = ropeAnchorPos; //set position first body
-        float radBody = 6f;
-        // Body params
-        float density = 0.05f;
-        float restitution = 0.5f;
-        float friction = 0.5f;
-        // Distance joint
-        float dampingRatio = 1f;
-        float frequencyHz = 15;
-        // Rope joint
-        float kMaxWidth = 1.1f;
-        // Bodies
-        int countBodyInChain = (int) (thePlayer.getPosition().dst(ropeAnchorPos) / distFactor);
         Body prevBody = null;
 
         //========Create bodies and joints
@@ -101,73 +128,80 @@ public class Rope {
             BodyDef bodyDef = new BodyDef();
             if(k==0 ) bodyDef.type = BodyDef.BodyType.StaticBody; //first body is static
             else bodyDef.type = BodyDef.BodyType.DynamicBody;
-            bodyDef.position.set(lastPos);
-            lastPos = lastPos.add(playerGrav.cpy().nor().scl(distFactor)); //modify b2Vect for next body
+            bodyDef.position.set(positions[offset + k * stride], positions[offset + k * stride + 1]);
             bodyDef.fixedRotation = true;
-            bodyDef.bullet = true;
             Body body = world.createBody(bodyDef);
 
             CircleShape distBodyBox = new CircleShape();
-            distBodyBox.setRadius(radBody);
+            distBodyBox.setRadius(RAD_BODY);
             FixtureDef fixDef = new FixtureDef();
-            fixDef.density = density;
-            fixDef.restitution = restitution;
-            fixDef.friction = friction;
+            fixDef.density = DENSITY;
+            fixDef.restitution = RESTITUTION;
+            fixDef.friction = FRICTION;
             fixDef.shape = distBodyBox;
             body.createFixture(fixDef);
-            //body.setHealth(9999999);
+            distBodyBox.dispose();
             body.setLinearDamping(0.0005f);
 
             if(k>0) {
-                //Create distance joint
-                DistanceJointDef distJDef = new DistanceJointDef();
-                Vector2 anchor1 = prevBody.getWorldCenter();
-                Vector2 anchor2 = body.getWorldCenter();
-                distJDef.initialize(prevBody, body, anchor1, anchor2);
-                distJDef.collideConnected = false;
-                distJDef.dampingRatio = dampingRatio;
-                distJDef.frequencyHz = frequencyHz;
-                ropeJoints.add(world.createJoint(distJDef));
-
-                //Create rope joint
-                RopeJointDef rDef = new RopeJointDef();
-                rDef.maxLength = (body.getPosition().sub(prevBody.getPosition())).len() * kMaxWidth;
-                rDef.localAnchorA.set(rDef.localAnchorB.set(0,0));
-                rDef.bodyA = prevBody;
-                rDef.bodyB = body;
-                ropeJoints.add(world.createJoint(rDef));
-
+                ropeJoints.add(createDistanceJoint(prevBody, body, segmentLength));
+                ropeJoints.add(createRopeJoint(prevBody, body, segmentLength));
             } //if k>0
             prevBody = body;
 
             ropeBodies.add(body);
         } //for
         if (prevBody != null) {
-            DistanceJointDef distJDef = new DistanceJointDef();
-            Vector2 anchor1 = prevBody.getWorldCenter();
-            Vector2 anchor2 = thePlayer.getBody().getWorldCenter();
-            distJDef.initialize(prevBody, thePlayer.getBody(), anchor1, anchor2);
-            distJDef.collideConnected = false;
-            distJDef.dampingRatio = dampingRatio;
-            distJDef.frequencyHz = frequencyHz;
-            world.createJoint(distJDef);
-
-            //Create rope joint
-            RopeJointDef rDef = new RopeJointDef();
-            rDef.maxLength = (thePlayer.getPosition().sub(prevBody.getPosition())).len() * kMaxWidth;
-            rDef.localAnchorA.set(rDef.localAnchorB.set(0, 0));
-            rDef.bodyA = prevBody;
-            rDef.bodyB = thePlayer.getBody();
-            world.createJoint(rDef);
+            createDistanceJoint(prevBody, thePlayer.getBody(), playerLinkLength);
+            createRopeJoint(prevBody, thePlayer.getBody(), playerLinkLength);
         }
     }
 
-    public void draw(SpriteBatch batch) {
+    private Joint createDistanceJoint(Body bodyA, Body bodyB, float length) {
+        DistanceJointDef distJDef = new DistanceJointDef();
+        distJDef.initialize(bodyA, bodyB, bodyA.getWorldCenter(), bodyB.getWorldCenter());
+        distJDef.length = length;
+        distJDef.collideConnected = false;
+        distJDef.dampingRatio = DAMPING_RATIO;
+        distJDef.frequencyHz = FREQUENCY_HZ;
+        return world.createJoint(distJDef);
+    }
+
+    private Joint createRopeJoint(Body bodyA, Body bodyB, float length) {
+        RopeJointDef rDef = new RopeJointDef();
+        rDef.maxLength = length * K_MAX_WIDTH;
+        rDef.localAnchorA.set(rDef.localAnchorB.set(0, 0));
+        rDef.bodyA = bodyA;
+        rDef.bodyB = bodyB;
+        return world.createJoint(rDef);
+    }
+
+    /**
+     * @return number of segment bodies, 0 if the throw didn't hit anything.
+     */
+    public int getSegmentCount() {
+        return ropeBodies == null ? 0 : ropeBodies.size();
+    }
+
+    /**
+     * @return segment body, index 0 is the static anchor.
+     */
+    public Body getSegment(int index) {
+        return ropeBodies.get(index);
+    }
+
+    public float getSegmentLength() {
+        return segmentLength;
+    }
+
+    public float getPlayerLinkLength() {
+        return playerLinkLength;
+    }
+
+    public void draw(RenderQueue queue) {
         if (ropeBodies == null) {
             return;
         }
-        TextureRegion ropeRegion = new TextureRegion(ropeTex, 0, 0, ropeTex.getWidth(), ropeTex.getHeight());
-        TextureRegion ropeKnotRegion = new TextureRegion(ropeKnotTex, 0, 0, ropeKnotTex.getWidth(), ropeKnotTex.getHeight());
         for (int i=0;i<ropeBodies.size();i++) {
 
             Body bodyA = ropeBodies.get(i);
@@ -196,9 +230,9 @@ public class Rope {
                 botLeft.y = bodyB.getPosition().y;
             }
 
-            float width = 6f;
+            float width = WIDTH;
 
-            batch.draw(ropeRegion,
+            queue.draw(RenderQueue.LAYER_ENTITIES, ropeRegion,
                     botLeft.x, //X
                     botLeft.y,
                     width / 2, //OriginX
@@ -210,11 +244,9 @@ public class Rope {
             );
 
             if (i != 0) {
-                //game.batch.disableBlending();
-                float scale = 0.2f;
+                float scale = KNOT_SCALE;
 
-                batch.setBlendFunction(GL20.GL_BLEND_SRC_ALPHA, GL20.GL_BLEND_DST_ALPHA);
-                batch.draw(ropeKnotRegion,
+                queue.draw(RenderQueue.LAYER_ENTITIES, ropeKnotRegion,
                         bodyA.getPosition().x - (ropeKnotRegion.getRegionWidth()/2)*scale, //X
                         bodyA.getPosition().y - (ropeKnotRegion.getRegionHeight()/2)*scale,
                         (ropeKnotRegion.getRegionWidth()/2)*scale, //OriginX
@@ -224,9 +256,6 @@ public class Rope {
                         scale, scale, //Scale
                         0  //Rotation
                 );
-                //game.batch.enableBlending();
-
-
             }
         }
     }
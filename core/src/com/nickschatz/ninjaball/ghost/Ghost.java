@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.ghost;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.Base64Coder;
+import com.nickschatz.ninjaball.entity.Player;
+import com.nickschatz.ninjaball.render.RenderQueue;
+
+/**
+ * Plays back a recorded run in step with the simulation, interpolating between the samples around the
+ * current render time. Drawn with the player's own sprite from the shared atlas, so it batches with the
+ * player and costs no extra draw call.
+ */
+public class Ghost {
+    private static final Color TINT = new Color(1, 1, 1, 0.4f);
+    private static final float ROPE_WIDTH = 0.09375f;
+
+    private final byte[] data;
+    private final GhostReader reader = new GhostReader();
+    private final TextureRegion ropeRegion;
+
+    //Sample at the current step and the one after it
+    private float x0, y0, angle0;
+    private float x1, y1, angle1;
+    private boolean rope;
+    private float anchorX, anchorY;
+    private boolean finished;
+
+    public Ghost(byte[] data, TextureRegion ropeRegion) {
+        this.data = data;
+        this.ropeRegion = ropeRegion;
+        restart();
+    }
+
+    /**
+     * @return null if there is no usable run.
+     */
+    public static Ghost fromBase64(String run, TextureRegion ropeRegion) {
+        if (run == null || run.length() == 0) {
+            return null;
+        }
+        try {
+            return new Ghost(Base64Coder.decode(run), ropeRegion);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public void restart() {
+        reader.reset(data, data.length);
+        finished = !reader.next();
+        copyCurrent();
+        x0 = x1;
+        y0 = y1;
+        angle0 = angle1;
+        if (!finished) {
+            step();
+        }
+    }
+
+    /**
+     * Advances by one physics step.
+     */
+    public void step() {
+        x0 = x1;
+        y0 = y1;
+        angle0 = angle1;
+        if (!finished && reader.next()) {
+            copyCurrent();
+        }
+        else {
+            finished = true;
+        }
+    }
+
+    private void copyCurrent() {
+        x1 = reader.getX();
+        y1 = reader.getY();
+        angle1 = reader.getAngle();
+        rope = reader.hasRope();
+        anchorX = reader.getAnchorX();
+        anchorY = reader.getAnchorY();
+    }
+
+    /**
+     * @param alpha how far the render time is between the current step and the next, 0 to 1.
+     */
+    public void draw(RenderQueue queue, Player player, float alpha) {
+        float x = x0 + (x1 - x0) * alpha;
+        float y = y0 + (y1 - y0) * alpha;
+        float turn = angle1 - angle0;
+        if (turn > MathUtils.PI) {
+            turn -= MathUtils.PI2;
+        }
+        else if (turn < -MathUtils.PI) {
+            turn += MathUtils.PI2;
+        }
+        float angle = angle0 + turn * alpha;
+
+        queue.setColor(TINT);
+        if (rope && ropeRegion != null) {
+            float dx = anchorX - x;
+            float dy = anchorY - y;
+            float length = (float) Math.sqrt(dx * dx + dy * dy);
+            queue.draw(RenderQueue.LAYER_ENTITIES, ropeRegion,
+                    (x + anchorX) / 2 - ROPE_WIDTH / 2, (y + anchorY) / 2 - length / 2,
+                    ROPE_WIDTH / 2, length / 2, ROPE_WIDTH, length, 1, 1,
+                    MathUtils.atan2(dy, dx) * MathUtils.radiansToDegrees - 90);
+        }
+        player.drawBall(queue, x, y, angle * MathUtils.radiansToDegrees);
+        queue.setColor(Color.WHITE);
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.ghost;
+
+import com.nickschatz.ninjaball.physics.Units;
+
+/**
+ * Layout of a recorded run. One sample per physics step, sample 0 is the state before the first step.
+ *
+ * Position is quantized to {@link #POSITION_SCALE} steps per metre, one per map pixel, and angle to {@link #ANGLE_STEPS}
+ * steps per turn. Each sample stores the change in velocity (second order delta), which is almost always
+ * tiny for a rolling ball, zigzag encoded:
+ * <ul>
+ * <li>compact, 1 byte: bit 7 set, bits 6-4 x, bits 3-1 y, bit 0 angle (0 or -1)</li>
+ * <li>full: a tag byte with bit 7 clear and bit 0 set if the rope changed, then x, y and angle as varints,
+ * then if the rope changed a varint 0 for no rope or 1 followed by the absolute anchor x and y</li>
+ * </ul>
+ */
+final class GhostFormat {
+    static final byte VERSION = 2;
+    static final float POSITION_SCALE = Units.PIXELS_PER_METER;
+    static final int ANGLE_STEPS = 256;
+
+    static final int COMPACT = 0x80;
+    static final int ROPE_CHANGED = 0x01;
+
+    private GhostFormat() {
+    }
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * @return difference of two quantized angles, taking the short way round.
+     */
+    static int wrapAngle(int delta) {
+        return ((delta + ANGLE_STEPS / 2) & (ANGLE_STEPS - 1)) - ANGLE_STEPS / 2;
+    }
+}
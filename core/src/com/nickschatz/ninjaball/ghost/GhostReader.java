@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.ghost;
+
+import com.badlogic.gdx.math.MathUtils;
+
+/**
+ * Streams samples out of a run written by {@link GhostRecorder}, one at a time and without allocating.
+ */
+public class GhostReader {
+    private byte[] data;
+    private int length;
+    private int position;
+
+    private int x, y, angle;
+    private int dx, dy, dAngle;
+    private boolean rope;
+    private int anchorX, anchorY;
+
+    /**
+     * Starts reading from the first sample. A run of a different version reads as empty.
+     */
+    public void reset(byte[] data, int length) {
+        this.data = data;
+        this.length = data != null && length > 0 && data[0] == GhostFormat.VERSION ? length : 0;
+        position = 1;
+        x = y = angle = 0;
+        dx = dy = dAngle = 0;
+        rope = false;
+        anchorX = anchorY = 0;
+    }
+
+    /**
+     * Decodes the next sample.
+     *
+     * @return false at the end of the run, the last sample stays current.
+     */
+    public boolean next() {
+        if (position >= length) {
+            return false;
+        }
+        int tag = data[position++] & 0xff;
+        int zx, zy, zAngle;
+        if ((tag & GhostFormat.COMPACT) != 0) {
+            zx = (tag >> 4) & 0x7;
+            zy = (tag >> 1) & 0x7;
+            zAngle = tag & 0x1;
+        }
+        else {
+            zx = readVarint();
+            zy = readVarint();
+            zAngle = readVarint();
+            if ((tag & GhostFormat.ROPE_CHANGED) != 0) {
+                rope = readVarint() != 0;
+                if (rope) {
+                    anchorX = GhostFormat.unzigzag(readVarint());
+                    anchorY = GhostFormat.unzigzag(readVarint());
+                }
+            }
+        }
+        dx += GhostFormat.unzigzag(zx);
+        dy += GhostFormat.unzigzag(zy);
+        dAngle += GhostFormat.unzigzag(zAngle);
+        x += dx;
+        y += dy;
+        angle = (angle + dAngle) & (GhostFormat.ANGLE_STEPS - 1);
+        return true;
+    }
+
+    private int readVarint() {
+        int value = 0;
+        int shift = 0;
+        while (position < length) {
+            int b = data[position++] & 0xff;
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+            shift += 7;
+        }
+        return value;
+    }
+
+    public float getX() {
+        return x / GhostFormat.POSITION_SCALE;
+    }
+
+    public float getY() {
+        return y / GhostFormat.POSITION_SCALE;
+    }
+
+    /**
+     * @return angle in radians, between 0 and 2 pi.
+     */
+    public float getAngle() {
+        return angle * MathUtils.PI2 / GhostFormat.ANGLE_STEPS;
+    }
+
+    public boolean hasRope() {
+        return rope;
+    }
+
+    public float getAnchorX() {
+        return anchorX / GhostFormat.POSITION_SCALE;
+    }
+
+    public float getAnchorY() {
+        return anchorY / GhostFormat.POSITION_SCALE;
+    }
+}
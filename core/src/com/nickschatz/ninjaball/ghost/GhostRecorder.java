@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.ghost;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Base64Coder;
+import com.badlogic.gdx.utils.ByteArray;
+import com.nickschatz.ninjaball.entity.Player;
+import com.nickschatz.ninjaball.entity.Rope;
+
+/**
+ * Records the player once per physics step in the {@link GhostFormat} encoding.
+ */
+public class GhostRecorder {
+    private final ByteArray data = new ByteArray(4096);
+
+    private int x, y, angle;
+    private int dx, dy, dAngle;
+    private boolean rope;
+    private int anchorX, anchorY;
+    private int samples;
+
+    public GhostRecorder() {
+        reset();
+    }
+
+    public void reset() {
+        data.clear();
+        data.add(GhostFormat.VERSION);
+        x = y = angle = 0;
+        dx = dy = dAngle = 0;
+        rope = false;
+        anchorX = anchorY = 0;
+        samples = 0;
+    }
+
+    public void record(Player player) {
+        Vector2 position = player.getPosition();
+        Rope playerRope = player.getRope();
+        boolean hasAnchor = playerRope != null && playerRope.getSegmentCount() > 0;
+        Vector2 anchor = hasAnchor ? playerRope.getSegment(0).getPosition() : null;
+        record(position.x, position.y, player.getRotation(), anchor);
+    }
+
+    /**
+     * @param angle in radians.
+     * @param anchor rope anchor, null without a rope.
+     */
+    public void record(float px, float py, float angle, Vector2 anchor) {
+        int qx = MathUtils.round(px * GhostFormat.POSITION_SCALE);
+        int qy = MathUtils.round(py * GhostFormat.POSITION_SCALE);
+        int qAngle = MathUtils.round(angle / MathUtils.PI2 * GhostFormat.ANGLE_STEPS) & (GhostFormat.ANGLE_STEPS - 1);
+
+        int newDx = qx - x;
+        int newDy = qy - y;
+        int newDAngle = GhostFormat.wrapAngle(qAngle - this.angle);
+        int zx = GhostFormat.zigzag(newDx - dx);
+        int zy = GhostFormat.zigzag(newDy - dy);
+        int zAngle = GhostFormat.zigzag(newDAngle - dAngle);
+        int qAnchorX = anchor == null ? 0 : MathUtils.round(anchor.x * GhostFormat.POSITION_SCALE);
+        int qAnchorY = anchor == null ? 0 : MathUtils.round(anchor.y * GhostFormat.POSITION_SCALE);
+        boolean ropeChanged = (anchor != null) != rope || qAnchorX != anchorX || qAnchorY != anchorY;
+
+        if (!ropeChanged && zx < 8 && zy < 8 && zAngle < 2) {
+            data.add((byte) (GhostFormat.COMPACT | zx << 4 | zy << 1 | zAngle));
+        }
+        else {
+            data.add((byte) (ropeChanged ? GhostFormat.ROPE_CHANGED : 0));
+            writeVarint(zx);
+            writeVarint(zy);
+            writeVarint(zAngle);
+            if (ropeChanged) {
+                if (anchor == null) {
+                    writeVarint(0);
+                }
+                else {
+                    writeVarint(1);
+                    writeVarint(GhostFormat.zigzag(qAnchorX));
+                    writeVarint(GhostFormat.zigzag(qAnchorY));
+                }
+            }
+        }
+
+        x = qx;
+        y = qy;
+        this.angle = qAngle;
+        dx = newDx;
+        dy = newDy;
+        dAngle = newDAngle;
+        rope = anchor != null;
+        anchorX = qAnchorX;
+        anchorY = qAnchorY;
+        samples++;
+    }
+
+    private void writeVarint(int value) {
+        while ((value & ~0x7f) != 0) {
+            data.add((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        data.add((byte) value);
+    }
+
+    public int getSampleCount() {
+        return samples;
+    }
+
+    public int getSize() {
+        return data.size;
+    }
+
+    /**
+     * @return the run as text, for storing in preferences.
+     */
+    public String toBase64() {
+        return new String(Base64Coder.encode(data.items, data.size));
+    }
+}
@@ -28,36 +28,72 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input;
 import com.badlogic.gdx.InputProcessor;
 import com.badlogic.gdx.scenes.scene2d.Stage;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.nickschatz.ninjaball.perf.LatencyProbe;
 import com.nickschatz.ninjaball.screen.GameScreen;
 
+/**
+ * Game actions fire on press and are queued with their time, the screen applies them at the physics step they fall in.
+ */
 public class GameInput implements InputProcessor {
+    /**
+     * @return whether {@link #eventTime()} is when the event happened and not when it is handled.
+     */
+    public static boolean hasEventTime() {
+        //Android stamps events with System.nanoTime() as the OS hands them over and queues them for the next frame.
+        //The desktop backend uses another clock and the others stamp them on handling.
+        return Gdx.app.getType() == Application.ApplicationType.Android;
+    }
+
+    /**
+     * @return when the event being handled happened, on the {@link TimeUtils#nanoTime()} clock. The time it is
+     * handled where the backend has no event time.
+     */
+    public static long eventTime() {
+        if (hasEventTime()) {
+            long time = Gdx.input.getCurrentEventTime();
+            if (time > 0) {
+                return time;
+            }
+        }
+        return TimeUtils.nanoTime();
+    }
+
     private GameScreen gameScreen;
     private Stage stage;
+    private InputQueue queue;
+    private LatencyProbe latencyProbe;
 
-    public GameInput(GameScreen gameScreen, Stage stage) {
+    public GameInput(GameScreen gameScreen, Stage stage, InputQueue queue, LatencyProbe latencyProbe) {
         this.gameScreen = gameScreen;
         this.stage = stage;
+        this.queue = queue;
+        this.latencyProbe = latencyProbe;
     }
 
     @Override
     public boolean keyDown(int keycode) {
-
-        return gameScreen.isPaused() && stage.keyDown(keycode);
-    }
-
-    @Override
-    public boolean keyUp(int keycode) {
         if (!gameScreen.isPaused()) {
             if (keycode == Input.Keys.BACK || keycode == Input.Keys.ESCAPE) {
                 gameScreen.togglePause();
+                return true;
             }
             if (keycode == Input.Keys.X) {
-                gameScreen.rope();
+                queue.offer(InputQueue.ROPE, eventTime());
             }
             if (keycode == Input.Keys.Z) {
-                gameScreen.jump();
+                queue.offer(InputQueue.JUMP, eventTime());
+            }
+            if (keycode == Input.Keys.LEFT || keycode == Input.Keys.RIGHT) {
+                latencyProbe.rotationKeyPressed(eventTime()); //Rotation itself is polled per step
             }
+            return false;
         }
+        return stage.keyDown(keycode);
+    }
+
+    @Override
+    public boolean keyUp(int keycode) {
         return gameScreen.isPaused() && stage.keyUp(keycode);
     }
 
@@ -68,22 +104,22 @@ public class GameInput implements InputProcessor {
 
     @Override
     public boolean touchDown(int screenX, int screenY, int pointer, int button) {
-
-        return gameScreen.isPaused() && stage.touchDown(screenX, screenY, pointer, button);
-    }
-
-    @Override
-    public boolean touchUp(int screenX, int screenY, int pointer, int button) {
         if (!gameScreen.isPaused()) {
             if (Gdx.app.getType() == Application.ApplicationType.Android) {
-                if (Gdx.input.getX() > Gdx.graphics.getWidth() / 2) {
-                    gameScreen.jump();
+                if (screenX > Gdx.graphics.getWidth() / 2) {
+                    queue.offer(InputQueue.JUMP, eventTime());
                 }
-                else if (Gdx.input.getX() <= Gdx.graphics.getWidth() / 2) {
-                    gameScreen.rope();
+                else {
+                    queue.offer(InputQueue.ROPE, eventTime());
                 }
             }
+            return false;
         }
+        return stage.touchDown(screenX, screenY, pointer, button);
+    }
+
+    @Override
+    public boolean touchUp(int screenX, int screenY, int pointer, int button) {
         return gameScreen.isPaused() && stage.touchUp(screenX, screenY, pointer, button);
     }
 
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.input;
+
+/**
+ * Fixed size ring of timestamped game actions, written by the input callbacks and drained by the physics step
+ * that the events belong to. Single producer, single consumer, no locks and no allocation after construction.
+ */
+public class InputQueue {
+    public static final int JUMP = 1;
+    public static final int ROPE = 2;
+
+    private final int[] types;
+    private final long[] times;
+    private final int mask;
+    //Only the consumer writes head, only the producer writes tail
+    private volatile int head = 0;
+    private volatile int tail = 0;
+    private int dropped = 0;
+
+    /**
+     * @param capacity rounded up to a power of two.
+     */
+    public InputQueue(int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        types = new int[size];
+        times = new long[size];
+        mask = size - 1;
+    }
+
+    /**
+     * @param timeNanos when the event happened, on the {@link com.badlogic.gdx.utils.TimeUtils#nanoTime()} clock.
+     * @return false if the queue was full and the event was dropped.
+     */
+    public boolean offer(int type, long timeNanos) {
+        int t = tail;
+        if (t - head > mask) {
+            dropped++;
+            return false;
+        }
+        types[t & mask] = type;
+        times[t & mask] = timeNanos;
+        tail = t + 1;
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return head == tail;
+    }
+
+    /**
+     * @return true if the oldest event happened at or before the given time.
+     */
+    public boolean hasEventBefore(long timeNanos) {
+        return head != tail && times[head & mask] <= timeNanos;
+    }
+
+    public int peekType() {
+        return types[head & mask];
+    }
+
+    public long peekTime() {
+        return times[head & mask];
+    }
+
+    public void poll() {
+        if (head != tail) {
+            head++;
+        }
+    }
+
+    /**
+     * Drops everything queued, for example while the game is paused.
+     */
+    public void clear() {
+        head = tail;
+    }
+
+    public int getDropped() {
+        return dropped;
+    }
+}
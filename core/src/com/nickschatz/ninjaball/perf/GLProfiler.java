@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.perf;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.utils.Logger;
+
+/**
+ * Counts GL draw calls, texture binds, shader switches and vertices per frame, split into the phases
+ * of a game frame. While enabled, Gdx.gl and Gdx.gl20 are replaced by a counting wrapper, and every
+ * frame is appended to a CSV in local storage.
+ *
+ * <p>Sprite batches only draw when they flush, so {@link #setPhase(int, SpriteBatch)} flushes the batch
+ * at phase boundaries while profiling. That adds a few draw calls compared to normal play.
+ */
+public class GLProfiler {
+    public static final int PHASE_OTHER = 0;
+    public static final int PHASE_TILES = 1;
+    public static final int PHASE_SPRITES = 2;
+    public static final int PHASE_LIGHTS = 3;
+    public static final int PHASE_STAGE = 4;
+    private static final String[] PHASE_NAMES = {"other", "tiles", "sprites", "lights", "stage"};
+
+    public static final int DRAW_CALLS = 0;
+    public static final int TEXTURE_BINDS = 1;
+    public static final int SHADER_SWITCHES = 2;
+    public static final int VERTICES = 3;
+    private static final String[] COUNTER_NAMES = {"draws", "binds", "shaders", "vertices"};
+
+    private static final String CSV_FILE = "glprofile.csv";
+    private static final int FRAMES_PER_WRITE = 60;
+
+    private final Logger log;
+    private final int[][] current = new int[PHASE_NAMES.length][COUNTER_NAMES.length];
+    private final int[][] last = new int[PHASE_NAMES.length][COUNTER_NAMES.length];
+    private final StringBuilder csv = new StringBuilder();
+    private final StringBuilder text = new StringBuilder();
+    private ProfilingGL20 profilingGL;
+    private int phase = PHASE_OTHER;
+    private int frame = 0;
+    private int bufferedFrames = 0;
+
+    public GLProfiler(int logLevel) {
+        log = new Logger("GLProfiler", logLevel);
+    }
+
+    public void setEnabled(boolean enabled) {
+        if (enabled == isEnabled()) return;
+
+        if (enabled) {
+            profilingGL = new ProfilingGL20(Gdx.gl20, this);
+            Gdx.gl = profilingGL;
+            Gdx.gl20 = profilingGL;
+            frame = 0;
+            clear(current);
+            clear(last);
+            if (canWrite() && !file().exists()) {
+                csv.append(csvHeader()).append('\n');
+            }
+            log.info("enabled, writing " + (canWrite() ? "local " + CSV_FILE : "nothing"));
+        }
+        else {
+            writeCsv();
+            Gdx.gl = profilingGL.gl;
+            Gdx.gl20 = profilingGL.gl;
+            profilingGL = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return profilingGL != null;
+    }
+
+    /**
+     * Attributes the following GL calls to a phase.
+     *
+     * @param batch flushed first if it is drawing, may be null.
+     */
+    public void setPhase(int phase, SpriteBatch batch) {
+        if (!isEnabled()) return;
+        if (batch != null && batch.isDrawing()) {
+            batch.flush();
+        }
+        this.phase = phase;
+    }
+
+    /**
+     * Call once per frame after everything is drawn.
+     */
+    public void endFrame() {
+        if (!isEnabled()) return;
+
+        frame++;
+        for (int p = 0; p < current.length; p++) {
+            System.arraycopy(current[p], 0, last[p], 0, current[p].length);
+        }
+        clear(current);
+        phase = PHASE_OTHER;
+
+        if (canWrite()) {
+            csv.append(frame);
+            for (int[] counters : last) {
+                for (int count : counters) {
+                    csv.append(',').append(count);
+                }
+            }
+            csv.append('\n');
+            if (++bufferedFrames >= FRAMES_PER_WRITE) {
+                writeCsv();
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered frames out, also call it when the game is paused.
+     */
+    public void writeCsv() {
+        if (csv.length() > 0) {
+            file().writeString(csv.toString(), true);
+            csv.setLength(0);
+        }
+        bufferedFrames = 0;
+    }
+
+    /**
+     * @return the counters of the last frame, one line per phase that drew anything.
+     */
+    public CharSequence describe() {
+        text.setLength(0);
+        text.append("GL frame ").append(frame);
+        for (int p = 0; p < last.length; p++) {
+            if (last[p][DRAW_CALLS] == 0 && last[p][TEXTURE_BINDS] == 0 && last[p][SHADER_SWITCHES] == 0) continue;
+            text.append('\n').append(PHASE_NAMES[p]).append(':');
+            for (int c = 0; c < COUNTER_NAMES.length; c++) {
+                text.append(' ').append(COUNTER_NAMES[c]).append(' ').append(last[p][c]);
+            }
+        }
+        return text;
+    }
+
+    public int get(int phase, int counter) {
+        return last[phase][counter];
+    }
+
+    void count(int counter) {
+        current[phase][counter]++;
+    }
+
+    void drawn(int vertices) {
+        current[phase][DRAW_CALLS]++;
+        current[phase][VERTICES] += vertices;
+    }
+
+    private static String csvHeader() {
+        StringBuilder header = new StringBuilder("frame");
+        for (String phase : PHASE_NAMES) {
+            for (String counter : COUNTER_NAMES) {
+                header.append(',').append(phase).append('_').append(counter);
+            }
+        }
+        return header.toString();
+    }
+
+    private static boolean canWrite() {
+        return Gdx.app.getType() != Application.ApplicationType.WebGL && Gdx.files.isLocalStorageAvailable();
+    }
+
+    private static FileHandle file() {
+        return Gdx.files.local(CSV_FILE);
+    }
+
+    private static void clear(int[][] counters) {
+        for (int[] row : counters) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = 0;
+            }
+        }
+    }
+}
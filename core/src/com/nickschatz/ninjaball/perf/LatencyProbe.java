@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.perf;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.Logger;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.nickschatz.ninjaball.input.GameInput;
+
+/**
+ * Measures how long input takes to reach the simulation and the screen.
+ * Every tagged sample records two latencies: from the raw event to the physics step that consumed it,
+ * and from the raw event to the end of the first frame rendered after that step. The frame end is taken
+ * before the buffer swap, so compositor and display latency are not included.
+ * Distributions are kept in 1ms histograms and logged per backend.
+ * Events are timed with {@link GameInput#eventTime()}. Where the backend has no event time, and for the
+ * accelerometer, which is polled, the time the sample was picked up is used instead. Those are logged as
+ * lower bounds, they miss the time spent between the OS and the frame.
+ */
+public class LatencyProbe {
+    public static final int KIND_ACTION = 0;
+    public static final int KIND_ROTATION_KEY = 1;
+    public static final int KIND_ACCELEROMETER = 2;
+    private static final String[] KIND_NAMES = {"action", "rotation key", "accelerometer"};
+
+    private static final int STAGE_STEP = 0;
+    private static final int STAGE_FRAME = 1;
+    private static final String[] STAGE_NAMES = {"input->step", "input->frame"};
+
+    private static final int BUCKETS = 250; //1ms each, plus one overflow bucket
+    private static final int MAX_PENDING = 64;
+    private static final long REPORT_INTERVAL_MS = 10000;
+
+    private final Logger log;
+    private final int[][] histograms = new int[KIND_NAMES.length * STAGE_NAMES.length][BUCKETS + 1];
+    private final long[] pendingTimes = new long[MAX_PENDING];
+    private final int[] pendingKinds = new int[MAX_PENDING];
+    private int pendingCount = 0;
+    private long rotationKeyTime = -1;
+    private long lastReport;
+    private boolean enabled = false;
+
+    public LatencyProbe(int logLevel) {
+        log = new Logger("LatencyProbe", logLevel);
+        lastReport = TimeUtils.millis();
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        pendingCount = 0;
+        rotationKeyTime = -1;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * A rotation key went down. Tagged once the rotation it causes is stepped.
+     */
+    public void rotationKeyPressed(long eventNanos) {
+        if (enabled && rotationKeyTime < 0) {
+            rotationKeyTime = eventNanos;
+        }
+    }
+
+    /**
+     * The step applying a rotation key press is running, see {@link #rotationKeyPressed(long)}.
+     */
+    public void rotationKeyStepped() {
+        if (rotationKeyTime >= 0) {
+            stepped(KIND_ROTATION_KEY, rotationKeyTime);
+            rotationKeyTime = -1;
+        }
+    }
+
+    /**
+     * A sample from the given time is being applied by the current physics step.
+     */
+    public void stepped(int kind, long eventNanos) {
+        if (!enabled) {
+            return;
+        }
+        record(kind, STAGE_STEP, TimeUtils.nanoTime() - eventNanos);
+        if (pendingCount < MAX_PENDING) {
+            pendingTimes[pendingCount] = eventNanos;
+            pendingKinds[pendingCount] = kind;
+            pendingCount++;
+        }
+    }
+
+    /**
+     * Call when a frame has been fully drawn. Everything stepped before it is now visible.
+     */
+    public void frameDrawn() {
+        if (!enabled) {
+            return;
+        }
+        long now = TimeUtils.nanoTime();
+        for (int i = 0; i < pendingCount; i++) {
+            record(pendingKinds[i], STAGE_FRAME, now - pendingTimes[i]);
+        }
+        pendingCount = 0;
+
+        if (TimeUtils.timeSinceMillis(lastReport) >= REPORT_INTERVAL_MS) {
+            report();
+        }
+    }
+
+    private void record(int kind, int stage, long nanos) {
+        int bucket = (int) (nanos / 1000000L);
+        if (bucket < 0) {
+            bucket = 0;
+        }
+        else if (bucket > BUCKETS) {
+            bucket = BUCKETS;
+        }
+        histograms[kind * STAGE_NAMES.length + stage][bucket]++;
+    }
+
+    /**
+     * Logs percentiles of everything recorded so far.
+     */
+    public void report() {
+        lastReport = TimeUtils.millis();
+        String backend = Gdx.app.getType().toString();
+        boolean eventTimes = GameInput.hasEventTime();
+        for (int kind = 0; kind < KIND_NAMES.length; kind++) {
+            String bound = eventTimes && kind != KIND_ACCELEROMETER ? "" : " (lower bound)";
+            for (int stage = 0; stage < STAGE_NAMES.length; stage++) {
+                int[] histogram = histograms[kind * STAGE_NAMES.length + stage];
+                int count = 0;
+                for (int n : histogram) {
+                    count += n;
+                }
+                if (count == 0) {
+                    continue;
+                }
+                log.info(backend + " " + KIND_NAMES[kind] + " " + STAGE_NAMES[stage] + bound + ": n=" + count +
+                        " p50=" + percentile(histogram, count, 0.5f) +
+                        "ms p95=" + percentile(histogram, count, 0.95f) +
+                        "ms p99=" + percentile(histogram, count, 0.99f) +
+                        "ms max=" + percentile(histogram, count, 1f) + "ms");
+            }
+        }
+    }
+
+    private String percentile(int[] histogram, int count, float p) {
+        int target = (int) Math.ceil(count * p);
+        int seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= target) {
+                return i == BUCKETS ? ">" + BUCKETS : Integer.toString(i);
+            }
+        }
+        return ">" + BUCKETS;
+    }
+
+    public void reset() {
+        for (int[] histogram : histograms) {
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] = 0;
+            }
+        }
+        pendingCount = 0;
+        rotationKeyTime = -1;
+    }
+}
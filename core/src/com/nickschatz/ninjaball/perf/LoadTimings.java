@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.perf;
+
+import com.badlogic.gdx.utils.Logger;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Records how long each loading phase takes, and when it finished relative to launch.
+ */
+public class LoadTimings {
+    private final Logger log;
+    private final long launchTime;
+    private final ObjectMap<String, Long> starts = new ObjectMap<String, Long>();
+    private final ObjectMap<String, Long> durations = new ObjectMap<String, Long>();
+
+    public LoadTimings(int logLevel) {
+        log = new Logger("LoadTimings", logLevel);
+        launchTime = TimeUtils.millis();
+    }
+
+    public void begin(String phase) {
+        starts.put(phase, TimeUtils.millis());
+    }
+
+    /**
+     * @return duration of the phase in milliseconds, or -1 if it was never started.
+     */
+    public long end(String phase) {
+        Long start = starts.remove(phase);
+        if (start == null) {
+            return -1;
+        }
+        long now = TimeUtils.millis();
+        long duration = now - start;
+        durations.put(phase, duration);
+        log.info(phase + " took " + duration + "ms, " + (now - launchTime) + "ms after launch");
+        return duration;
+    }
+
+    public boolean isRunning(String phase) {
+        return starts.containsKey(phase);
+    }
+
+    /**
+     * @return duration of a finished phase in milliseconds, or -1.
+     */
+    public long getDuration(String phase) {
+        Long duration = durations.get(phase);
+        return duration == null ? -1 : duration;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.perf;
+
+import com.badlogic.gdx.utils.Logger;
+
+/**
+ * Watches a rolling window of frame times and moves along the {@link QualityTier} ladder
+ * to hold a target frame rate.
+ *
+ * A slow window steps quality down right away. Stepping back up needs a stretch of smooth
+ * frames, and every time an upgrade to a tier has to be undone the stretch needed to try
+ * that tier again doubles, so the governor settles on the best tier the device can hold
+ * instead of bouncing between two.
+ */
+public class QualityGovernor {
+    public interface Listener {
+        void applyQuality(QualityTier tier);
+    }
+
+    private static final int WINDOW = 60;
+    private static final float SLOW_RATIO = 1.15f;
+    private static final float SMOOTH_RATIO = 1.05f;
+    private static final float BASE_UPGRADE_DELAY = 5f;
+    private static final float MAX_SAMPLE = 0.25f;
+
+    private final Listener listener;
+    private final Logger log;
+    private final float targetFrameTime;
+
+    private final float[] frameTimes = new float[WINDOW];
+    private int frameIndex = 0;
+    private int frameCount = 0;
+    private float frameSum = 0;
+
+    private final int[] failures = new int[QualityTier.TIERS.length];
+    private int tier;
+    private float smoothTime = 0;
+
+    public QualityGovernor(Listener listener, float targetFps, int startTier, int logLevel) {
+        this.listener = listener;
+        this.targetFrameTime = 1f / targetFps;
+        this.tier = Math.max(0, Math.min(QualityTier.TIERS.length - 1, startTier));
+        log = new Logger("QualityGovernor", logLevel);
+
+        listener.applyQuality(getTier());
+    }
+
+    /**
+     * @param delta duration of the last frame in seconds.
+     */
+    public void update(float delta) {
+        if (delta > MAX_SAMPLE) {
+            //Loading hitch or the app coming back from the background, not a rendering cost
+            return;
+        }
+
+        frameSum += delta - frameTimes[frameIndex];
+        frameTimes[frameIndex] = delta;
+        frameIndex = (frameIndex + 1) % WINDOW;
+        if (frameCount < WINDOW) {
+            frameCount++;
+            return;
+        }
+
+        float average = frameSum / WINDOW;
+        if (average > targetFrameTime * SLOW_RATIO) {
+            smoothTime = 0;
+            if (tier < QualityTier.TIERS.length - 1) {
+                failures[tier]++;
+                setTier(tier + 1, average);
+            }
+        }
+        else if (average <= targetFrameTime * SMOOTH_RATIO) {
+            smoothTime += delta;
+            if (tier > 0 && smoothTime >= upgradeDelay(tier - 1)) {
+                setTier(tier - 1, average);
+            }
+        }
+        else {
+            smoothTime = 0;
+        }
+    }
+
+    public QualityTier getTier() {
+        return QualityTier.TIERS[tier];
+    }
+
+    private float upgradeDelay(int targetTier) {
+        return BASE_UPGRADE_DELAY * (1 << Math.min(failures[targetTier], 6));
+    }
+
+    private void setTier(int newTier, float average) {
+        log.info("quality " + QualityTier.TIERS[tier] + " -> " + QualityTier.TIERS[newTier] +
+                " (average frame " + (average * 1000) + "ms, target " + (targetFrameTime * 1000) + "ms)");
+        tier = newTier;
+        smoothTime = 0;
+        frameCount = 0;
+        frameSum = 0;
+        for (int i = 0; i < WINDOW; i++) {
+            frameTimes[i] = 0;
+        }
+        listener.applyQuality(getTier());
+    }
+}
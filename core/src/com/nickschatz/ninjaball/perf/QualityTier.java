@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.perf;
+
+import com.nickschatz.ninjaball.util.LightSettings;
+
+/**
+ * One step on the quality ladder used by the {@link QualityGovernor}. Only what is drawn changes,
+ * the physics stays the same on every tier so a run plays the same on any device.
+ */
+public class QualityTier {
+    /**
+     * Ordered from best looking to cheapest.
+     */
+    public static final QualityTier[] TIERS = {
+            new QualityTier("Ultra",   1f,    LightSettings.HIGH,   true,  1f),
+            new QualityTier("High",    1f,    LightSettings.MEDIUM, true,  1f),
+            new QualityTier("Medium",  0.5f,  LightSettings.MEDIUM, true,  1f),
+            new QualityTier("Low",     0.5f,  LightSettings.LOW,    true,  0.75f),
+            new QualityTier("Minimum", 0.25f, LightSettings.LOW,    false, 0.5f)
+    };
+
+    private final String name;
+    private final float rayScale;
+    private final LightSettings lightSettings;
+    private final boolean shadows;
+    private final float renderScale;
+
+    public QualityTier(String name, float rayScale, LightSettings lightSettings, boolean shadows, float renderScale) {
+        this.name = name;
+        this.rayScale = rayScale;
+        this.lightSettings = lightSettings;
+        this.shadows = shadows;
+        this.renderScale = renderScale;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return fraction of the ray count authored in the map that each light gets.
+     */
+    public float getRayScale() {
+        return rayScale;
+    }
+
+    public LightSettings getLightSettings() {
+        return lightSettings;
+    }
+
+    public boolean hasShadows() {
+        return shadows;
+    }
+
+    /**
+     * @return resolution of the tile and sprite pass relative to the screen.
+     */
+    public float getRenderScale() {
+        return renderScale;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.perf;
+
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.nickschatz.ninjaball.entity.Rope;
+import com.nickschatz.ninjaball.physics.ContactListenerDelegate;
+
+/**
+ * Samples the size of the Box2D world after every step, together with the step time.
+ * The sample of the slowest step is kept, so a spike can be put down to the rope, the map
+ * geometry or contact churn after the fact.
+ */
+public class WorldStats {
+    public static final int BODIES = 0;
+    /** Bodies that aren't static and aren't sleeping. */
+    public static final int AWAKE_BODIES = 1;
+    public static final int FIXTURES = 2;
+    public static final int JOINTS = 3;
+    public static final int CONTACTS = 4;
+    /** Contact begin and end events the delegate received during the step. */
+    public static final int DISPATCHED = 5;
+    /** Of those, how many at least one executor accepted, counted once however many took it. */
+    public static final int HANDLED = 6;
+    public static final int ROPE_SEGMENTS = 7;
+    public static final int COUNT = 8;
+    public static final String[] NAMES = {"bodies", "awake", "fixtures", "joints", "contacts",
+            "dispatched", "handled", "rope"};
+
+    private final int[] last = new int[COUNT];
+    private final int[] slowest = new int[COUNT];
+    private final Array<Body> bodies = new Array<Body>();
+    private long lastNanos;
+    private long slowestNanos = -1;
+    private int lastDispatched;
+    private int lastHandled;
+
+    /**
+     * @param rope may be null.
+     */
+    public void sample(World world, ContactListenerDelegate contacts, Rope rope, long stepNanos) {
+        world.getBodies(bodies);
+        int awake = 0;
+        int fixtures = 0;
+        for (int i = 0; i < bodies.size; i++) {
+            Body body = bodies.get(i);
+            if (body.getType() != BodyDef.BodyType.StaticBody && body.isAwake()) awake++;
+            fixtures += body.getFixtureList().size;
+        }
+        bodies.clear();
+
+        last[BODIES] = world.getBodyCount();
+        last[AWAKE_BODIES] = awake;
+        last[FIXTURES] = fixtures;
+        last[JOINTS] = world.getJointCount();
+        last[CONTACTS] = world.getContactCount();
+        last[DISPATCHED] = contacts.getDispatchedCount() - lastDispatched;
+        last[HANDLED] = contacts.getHandledCount() - lastHandled;
+        last[ROPE_SEGMENTS] = rope == null ? 0 : rope.getSegmentCount();
+        lastDispatched = contacts.getDispatchedCount();
+        lastHandled = contacts.getHandledCount();
+        lastNanos = stepNanos;
+
+        if (stepNanos > slowestNanos) {
+            slowestNanos = stepNanos;
+            System.arraycopy(last, 0, slowest, 0, COUNT);
+        }
+    }
+
+    /**
+     * @param stat one of the constants.
+     */
+    public int get(int stat) {
+        return last[stat];
+    }
+
+    /**
+     * @return the value of a stat at the slowest step since the last reset.
+     */
+    public int getAtSlowest(int stat) {
+        return slowest[stat];
+    }
+
+    public long getStepNanos() {
+        return lastNanos;
+    }
+
+    public long getSlowestStepNanos() {
+        return Math.max(0, slowestNanos);
+    }
+
+    public void resetSlowest() {
+        slowestNanos = -1;
+    }
+
+    /**
+     * @return the last sample and the slowest one, as one line each.
+     */
+    public String describe() {
+        StringBuilder text = new StringBuilder();
+        append(text, "Step", lastNanos, last);
+        text.append('\n');
+        append(text, "Slowest", getSlowestStepNanos(), slowest);
+        return text.toString();
+    }
+
+    private static void append(StringBuilder text, String title, long nanos, int[] values) {
+        text.append(title).append(' ').append(nanos / 1000).append("us:");
+        for (int i = 0; i < COUNT; i++) {
+            text.append(' ').append(NAMES[i]).append(' ').append(values[i]);
+        }
+    }
+}
@@ -23,25 +23,16 @@
 
 package com.nickschatz.ninjaball.physics;
 
-import com.nickschatz.ninjaball.screen.GameScreen;
-import com.nickschatz.ninjaball.util.UserData;
+import com.badlogic.gdx.math.Vector2;
 
-public class PlayerExitContactExecutor extends IntegerContactExecutor {
-
-    private GameScreen gameScreen;
-
-    public PlayerExitContactExecutor(GameScreen gameScreen) {
-        super(UserData.PLAYER_SENSOR, UserData.EXIT);
-        this.gameScreen = gameScreen;
-    }
-
-    @Override
-    public void beginContact(Integer userDataA, Integer userDataB) {
-        gameScreen.nextLevel();
-    }
-
-    @Override
-    public void endContact(Integer userDataA, Integer userDataB) {
+/**
+ * Something the rope can catch on. {@link StaticField} answers for the map, streamed levels supply their own.
+ */
+public interface AnchorSource {
 
-    }
+    /**
+     * @param hit set to the anchor point, untouched on a miss.
+     * @return fraction of the segment where it hit, or -1 if nothing is in reach.
+     */
+    float rayCast(float x1, float y1, float x2, float y2, Vector2 hit);
 }
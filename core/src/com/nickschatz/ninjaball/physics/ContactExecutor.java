@@ -46,6 +46,14 @@ public abstract class ContactExecutor {
      */
     public abstract void endContact(Fixture fixtureA, Fixture fixtureB);
 
+    /**
+     * Narrows the match beyond the user data types, e.g. to specific values.
+     * Same precondition as {@link #beginContact(Fixture, Fixture)}.
+     */
+    public boolean accepts(Fixture fixtureA, Fixture fixtureB) {
+        return true;
+    }
+
     public Class<?> getTypeA() {
         return typeA;
     }
@@ -26,6 +26,7 @@ package com.nickschatz.ninjaball.physics;
 import com.badlogic.gdx.physics.box2d.Contact;
 import com.badlogic.gdx.physics.box2d.ContactImpulse;
 import com.badlogic.gdx.physics.box2d.ContactListener;
+import com.badlogic.gdx.physics.box2d.Fixture;
 import com.badlogic.gdx.physics.box2d.Manifold;
 
 import java.util.LinkedList;
@@ -33,6 +34,8 @@ import java.util.List;
 
 public class ContactListenerDelegate implements ContactListener {
     private List<ContactExecutor> contactExecutors;
+    private int dispatched = 0;
+    private int handled = 0;
 
     public ContactListenerDelegate() {
         this.contactExecutors = new LinkedList<ContactExecutor>();
@@ -44,40 +47,67 @@ public class ContactListenerDelegate implements ContactListener {
 
     @Override
     public void beginContact(Contact contact) {
-        if (contact.getFixtureA() == null || contact.getFixtureB() == null) {
-            return;
-        }
-        for (ContactExecutor executor : contactExecutors) {
-            if (executor.getTypeA().isInstance(contact.getFixtureA().getUserData())) {
-                if (executor.getTypeB().isInstance(contact.getFixtureB().getUserData())) {
-                    executor.beginContact(contact.getFixtureA(), contact.getFixtureB());
-                }
-            }
-            if (executor.getTypeA().isInstance(contact.getFixtureB().getUserData())) {
-                if (executor.getTypeB().isInstance(contact.getFixtureA().getUserData())) {
-                    executor.beginContact(contact.getFixtureB(), contact.getFixtureA());
-                }
-            }
-        }
+        dispatch(contact, true);
     }
 
     @Override
     public void endContact(Contact contact) {
-        if (contact.getFixtureA() == null || contact.getFixtureB() == null) {
+        dispatch(contact, false);
+    }
+
+    /**
+     * Offers the fixtures to every executor in both orders, so executors don't care which fixture Box2D puts first.
+     */
+    private void dispatch(Contact contact, boolean begin) {
+        dispatched++;
+        Fixture fixtureA = contact.getFixtureA();
+        Fixture fixtureB = contact.getFixtureB();
+        if (fixtureA == null || fixtureB == null) {
             return;
         }
+        boolean taken = false;
         for (ContactExecutor executor : contactExecutors) {
-            if (executor.getTypeA().isInstance(contact.getFixtureA().getUserData())) {
-                if (executor.getTypeB().isInstance(contact.getFixtureB().getUserData())) {
-                    executor.endContact(contact.getFixtureA(), contact.getFixtureB());
-                }
+            if (matches(executor, fixtureA, fixtureB)) {
+                call(executor, fixtureA, fixtureB, begin);
+                taken = true;
             }
-            if (executor.getTypeA().isInstance(contact.getFixtureB().getUserData())) {
-                if (executor.getTypeB().isInstance(contact.getFixtureA().getUserData())) {
-                    executor.endContact(contact.getFixtureB(), contact.getFixtureA());
-                }
+            if (matches(executor, fixtureB, fixtureA)) {
+                call(executor, fixtureB, fixtureA, begin);
+                taken = true;
             }
         }
+        if (taken) {
+            handled++;
+        }
+    }
+
+    private boolean matches(ContactExecutor executor, Fixture fixtureA, Fixture fixtureB) {
+        return executor.getTypeA().isInstance(fixtureA.getUserData())
+                && executor.getTypeB().isInstance(fixtureB.getUserData())
+                && executor.accepts(fixtureA, fixtureB);
+    }
+
+    private void call(ContactExecutor executor, Fixture fixtureA, Fixture fixtureB, boolean begin) {
+        if (begin) {
+            executor.beginContact(fixtureA, fixtureB);
+        }
+        else {
+            executor.endContact(fixtureA, fixtureB);
+        }
+    }
+
+    /**
+     * @return begin and end contact events received so far.
+     */
+    public int getDispatchedCount() {
+        return dispatched;
+    }
+
+    /**
+     * @return of those, how many at least one executor accepted. Never more than {@link #getDispatchedCount()}.
+     */
+    public int getHandledCount() {
+        return handled;
     }
 
     @Override
@@ -0,0 +1,377 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.physics;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.MapObject;
+import com.badlogic.gdx.maps.objects.RectangleMapObject;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.nickschatz.ninjaball.entity.EntitySpawner;
+import com.nickschatz.ninjaball.entity.EntityStore;
+import com.nickschatz.ninjaball.entity.Player;
+import com.nickschatz.ninjaball.perf.WorldStats;
+import com.nickschatz.ninjaball.trigger.Trigger;
+import com.nickschatz.ninjaball.trigger.TriggerGrid;
+import com.nickschatz.ninjaball.util.MapBodyManager;
+
+/**
+ * The simulated part of a level: the Box2D world, the map bodies and the player.
+ * Kept free of rendering so it can be stepped, captured and restored on its own.
+ */
+public class GameWorld implements Disposable, TriggerGrid.Listener {
+
+    public static final float ROT_LIMIT = 90;
+    /** Lengths are in metres, see {@link Units}. */
+    public static final float ROPE_LENGTH = 9.375f;
+    /** Simulated time of one step, the same in the game and in the tools. */
+    public static final float STEP_TIME = 1 / 30f;
+    /**
+     * The levels were tuned with Box2D working in units of two map pixels. Box2D has a few limits built in
+     * per unit, so the ones the game feels are set from this instead of being left at their metre values.
+     */
+    private static final float TUNING_UNIT = Units.toMeters(2);
+    private static final float GRAVITY = 10 * TUNING_UNIT;
+    /** Box2D stops bodies travelling more than 2 units per step, which was the top speed of everything. */
+    private static final float MAX_SPEED = 2 * TUNING_UNIT / STEP_TIME;
+    /** Below 1 unit/s Box2D treats collisions as inelastic, so the player's small bounce survives most landings. */
+    private static final float VELOCITY_THRESHOLD = TUNING_UNIT;
+    /** Fixed on every device, the levels are tuned and solved with them. */
+    private static final int VELOCITY_ITERATIONS = 6;
+    private static final int POSITION_ITERATIONS = 2;
+    private static final float TRIGGER_CELL_SIZE = 4;
+    private static final float FIELD_CELL_SIZE = 0.25f;
+    private static final float PLAYER_RADIUS = 0.3125f;
+    /** Where the player starts on maps without a "spawn" object. */
+    private static final float DEFAULT_SPAWN_X = 3.125f;
+    private static final float DEFAULT_SPAWN_Y = 9.375f;
+
+    private final World world;
+    private final Player player;
+    private final ContactListenerDelegate contactListenerDelegate;
+    private final PlayerMapContactExecutor mapContactExecutor;
+    private final MapBodyManager mapBodyManager;
+    private final EntityStore entities;
+    private final EntitySpawner entitySpawner;
+    private final TriggerGrid triggers;
+    private final StaticField staticField;
+    private AnchorSource anchorSource;
+    private final WorldStats stats = new WorldStats();
+    private final Vector2 ropeAnchor = new Vector2();
+    private final Vector2 spawn = new Vector2();
+    private final Array<Body> bodies = new Array<Body>();
+    private Trigger currentSign;
+    private final TiledMap map;
+
+    private final Vector2 playerGrav = new Vector2();
+    private final Vector2 gravity = new Vector2();
+    private float rotation = 0;
+    private int stepCount = 0;
+    private boolean exitReached = false;
+    private boolean playerHit = false;
+    private int pickups = 0;
+
+    /**
+     * @param atlas entity sprites, may be null when nothing is rendered.
+     */
+    public GameWorld(TiledMap map, FileHandle materialsFile, TextureAtlas atlas, int logLevel) {
+        this.map = map;
+        world = new World(new Vector2(0, -GRAVITY), true);
+        World.setVelocityThreshold(VELOCITY_THRESHOLD); //Global in Box2D, the same for every world
+        entities = new EntityStore(world, 64);
+
+        findSpawn(map, "physics", spawn);
+        player = new Player(world, spawn.x, spawn.y, PLAYER_RADIUS);
+        contactListenerDelegate = new ContactListenerDelegate();
+        mapContactExecutor = new PlayerMapContactExecutor(player);
+        contactListenerDelegate.addContactExecutor(mapContactExecutor);
+        contactListenerDelegate.addContactExecutor(new PlayerEntityContactExecutor(this, entities));
+        world.setContactListener(contactListenerDelegate);
+
+        mapBodyManager = new MapBodyManager(world, Units.PIXELS_PER_METER, materialsFile, logLevel);
+        mapBodyManager.createPhysics(map, "physics");
+        triggers = new TriggerGrid(TRIGGER_CELL_SIZE, this, logLevel);
+        triggers.createTriggers(map, "physics", Units.PIXELS_PER_METER);
+        staticField = new StaticField(map, "physics", Units.PIXELS_PER_METER, FIELD_CELL_SIZE, logLevel);
+        anchorSource = staticField;
+
+        entitySpawner = new EntitySpawner(world, entities, Units.PIXELS_PER_METER, atlas, logLevel);
+        entitySpawner.createEntities(map, "objects");
+
+        updateGravity();
+    }
+
+    /**
+     * Sets out to the centre of the rectangle with type "spawn", or to the default spawn if there is none.
+     */
+    private static void findSpawn(TiledMap map, String layerName, Vector2 out) {
+        out.set(DEFAULT_SPAWN_X, DEFAULT_SPAWN_Y);
+        MapLayer layer = map.getLayers().get(layerName);
+        if (layer == null) {
+            return;
+        }
+        for (MapObject object : layer.getObjects()) {
+            if (object instanceof RectangleMapObject &&
+                    object.getProperties().get("type", "none", String.class).equals(Trigger.SPAWN)) {
+                Rectangle rect = ((RectangleMapObject) object).getRectangle();
+                out.set(Units.toMeters(rect.x + rect.width / 2), Units.toMeters(rect.y + rect.height / 2));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Advances the simulation by one step, applying the rotated gravity to the player first.
+     */
+    public void step(float timeStep) {
+        long start = TimeUtils.nanoTime();
+        //Apply fake gravity
+        player.getBody().applyForce(playerGrav, player.getBody().getWorldCenter(), true);
+        entities.applyGravity(gravity);
+        entities.patrol();
+
+        world.step(timeStep, VELOCITY_ITERATIONS, POSITION_ITERATIONS);
+        capSpeeds();
+        stepCount++;
+
+        entities.flushRemovals();
+        entities.syncFromBodies();
+
+        Vector2 position = player.getPosition();
+        triggers.update(position.x, position.y, player.getSensorRadius());
+
+        stats.sample(world, contactListenerDelegate, player.getRope(), TimeUtils.nanoTime() - start);
+    }
+
+    /**
+     * Keeps every dynamic body at or below {@link #MAX_SPEED}, as Box2D did when it worked in tuning units.
+     */
+    private void capSpeeds() {
+        world.getBodies(bodies);
+        for (int i = 0; i < bodies.size; i++) {
+            Body body = bodies.get(i);
+            if (body.getType() != BodyDef.BodyType.DynamicBody || !body.isAwake()) {
+                continue;
+            }
+            Vector2 velocity = body.getLinearVelocity();
+            float speedSquared = velocity.len2();
+            if (speedSquared > MAX_SPEED * MAX_SPEED) {
+                float scale = MAX_SPEED / (float) Math.sqrt(speedSquared);
+                body.setLinearVelocity(velocity.x * scale, velocity.y * scale);
+            }
+        }
+        bodies.clear();
+    }
+
+    @Override
+    public void triggerEntered(Trigger trigger) {
+        if (trigger.getType() == Trigger.TYPE_EXIT) {
+            exitReached = true;
+        }
+        else if (trigger.getType() == Trigger.TYPE_SIGN) {
+            currentSign = trigger;
+        }
+    }
+
+    @Override
+    public void triggerExited(Trigger trigger) {
+        if (trigger == currentSign) {
+            currentSign = null;
+        }
+    }
+
+    /**
+     * @return the sign the player is at, or null.
+     */
+    public Trigger getCurrentSign() {
+        return currentSign;
+    }
+
+    /**
+     * Puts every entity back where the map placed it, for restarting the level.
+     */
+    public void respawnEntities() {
+        entities.clear();
+        entitySpawner.createEntities(map, "objects");
+        pickups = 0;
+        playerHit = false;
+    }
+
+    public void rope() {
+        boolean hit = player.hasRope() || findRopeAnchor(ropeAnchor);
+        player.throwRope(hit ? ropeAnchor : null, playerGrav, world);
+    }
+
+    public void jump() {
+        player.jump(playerGrav);
+    }
+
+    /**
+     * Casts the rope against the anchor source, the static level geometry unless set otherwise.
+     *
+     * @param out set to the anchor point, or to the end of the ray if nothing was hit.
+     * @return true if the rope would hit something.
+     */
+    public boolean findRopeAnchor(Vector2 out) {
+        Vector2 position = player.getPosition();
+        float length = playerGrav.len();
+        float endX = position.x - playerGrav.x / length * ROPE_LENGTH;
+        float endY = position.y - playerGrav.y / length * ROPE_LENGTH;
+        if (anchorSource.rayCast(position.x, position.y, endX, endY, out) < 0) {
+            out.set(endX, endY);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Sets the world rotation in degrees, clamped to {@link #ROT_LIMIT}.
+     */
+    public void setRotation(float rotation) {
+        if (rotation > ROT_LIMIT) {
+            rotation = ROT_LIMIT;
+        }
+        else if (rotation < -ROT_LIMIT) {
+            rotation = -ROT_LIMIT;
+        }
+        this.rotation = rotation;
+        updateGravity();
+    }
+
+    public float getRotation() {
+        return rotation;
+    }
+
+    private void updateGravity() {
+        gravity.set(world.getGravity()).rotate(rotation);
+        playerGrav.set(gravity).scl(player.getBody().getMass());
+    }
+
+    /**
+     * @return the force applied to the player each step. Do not modify.
+     */
+    public Vector2 getPlayerGravity() {
+        return playerGrav;
+    }
+
+    public boolean isExitReached() {
+        return exitReached;
+    }
+
+    void collectPickup() {
+        pickups++;
+    }
+
+    public int getPickups() {
+        return pickups;
+    }
+
+    void setPickups(int pickups) {
+        this.pickups = pickups;
+    }
+
+    /**
+     * Called from inside {@link World#step} when an enemy or hazard touches the player.
+     */
+    void hitPlayer() {
+        playerHit = true;
+    }
+
+    public boolean isPlayerHit() {
+        return playerHit;
+    }
+
+    public int getStepCount() {
+        return stepCount;
+    }
+
+    void setStepCount(int stepCount) {
+        this.stepCount = stepCount;
+        exitReached = false;
+        playerHit = false;
+    }
+
+    /**
+     * @return where the player starts, in metres.
+     */
+    public Vector2 getSpawn() {
+        return spawn;
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * @param anchorSource what the rope catches on instead of the static geometry of the map.
+     */
+    public void setAnchorSource(AnchorSource anchorSource) {
+        this.anchorSource = anchorSource;
+    }
+
+    public StaticField getStaticField() {
+        return staticField;
+    }
+
+    public EntityStore getEntities() {
+        return entities;
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    public PlayerMapContactExecutor getMapContactExecutor() {
+        return mapContactExecutor;
+    }
+
+    public MapBodyManager getMapBodyManager() {
+        return mapBodyManager;
+    }
+
+    /**
+     * @return sizes of the world sampled after every step.
+     */
+    public WorldStats getStats() {
+        return stats;
+    }
+
+    public TriggerGrid getTriggers() {
+        return triggers;
+    }
+
+    @Override
+    public void dispose() {
+        world.dispose();
+    }
+}
@@ -40,32 +40,18 @@ public abstract class IntegerContactExecutor extends ContactExecutor {
     public abstract void endContact(Integer userDataA, Integer userDataB);
 
     @Override
-    public void beginContact(Fixture fixtureA, Fixture fixtureB) {
-        if (fixtureA.getUserData() == i1) {
-            if (fixtureB.getUserData() == i2) {
-                this.beginContact(i1, i2);
-            }
-        }
-        if (fixtureA.getUserData() == i2) {
-            if (fixtureB.getUserData() == i1) {
-                this.beginContact(i2, i1);
-            }
-        }
+    public boolean accepts(Fixture fixtureA, Fixture fixtureB) {
+        //ContactListenerDelegate already offers both orders, so only one of them may match or a contact counts twice
+        return fixtureA.getUserData() == i1 && fixtureB.getUserData() == i2;
+    }
 
+    @Override
+    public void beginContact(Fixture fixtureA, Fixture fixtureB) {
+        this.beginContact(i1, i2);
     }
 
     @Override
     public void endContact(Fixture fixtureA, Fixture fixtureB) {
-        if (fixtureA.getUserData() == i1) {
-            if (fixtureB.getUserData() == i2) {
-                this.endContact(i1, i2);
-            }
-        }
-        if (fixtureA.getUserData() == i2) {
-            if (fixtureB.getUserData() == i1) {
-                this.endContact(i2, i1);
-            }
-        }
-
+        this.endContact(i1, i2);
     }
 }
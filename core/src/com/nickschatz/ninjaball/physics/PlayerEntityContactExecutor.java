@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.physics;
+
+import com.badlogic.gdx.physics.box2d.Fixture;
+import com.nickschatz.ninjaball.entity.EntityStore;
+import com.nickschatz.ninjaball.util.UserData;
+
+/**
+ * Player touching an entity: pickups are collected, enemies and hazards end the attempt.
+ */
+public class PlayerEntityContactExecutor extends ContactExecutor {
+
+    private GameWorld gameWorld;
+    private EntityStore store;
+
+    public PlayerEntityContactExecutor(GameWorld gameWorld, EntityStore store) {
+        super(Integer.class, Integer.class);
+        this.gameWorld = gameWorld;
+        this.store = store;
+    }
+
+    @Override
+    public void beginContact(Fixture fixtureA, Fixture fixtureB) {
+        if (fixtureA.getUserData() != UserData.PLAYER_SENSOR || fixtureB.getUserData() != UserData.ENTITY) {
+            return;
+        }
+        int id = (Integer) fixtureB.getBody().getUserData();
+        int index = store.getIndex(id);
+        if (index < 0) {
+            return;
+        }
+        if (store.getType(index) == EntityStore.TYPE_PICKUP) {
+            store.removeLater(id); //Can't destroy bodies during the step
+            gameWorld.collectPickup();
+        }
+        else {
+            gameWorld.hitPlayer();
+        }
+    }
+
+    @Override
+    public void endContact(Fixture fixtureA, Fixture fixtureB) {
+
+    }
+}
@@ -23,6 +23,8 @@
 
 package com.nickschatz.ninjaball.physics;
 
+import com.badlogic.gdx.physics.box2d.Contact;
+import com.badlogic.gdx.physics.box2d.World;
 import com.nickschatz.ninjaball.entity.Player;
 import com.nickschatz.ninjaball.util.UserData;
 
@@ -47,4 +49,28 @@ public class PlayerMapContactExecutor extends IntegerContactExecutor {
         numContacts--;
         player.setCanJump(numContacts > 0);
     }
+
+    public int getContactCount() {
+        return numContacts;
+    }
+
+    /**
+     * Recounts the touching sensor/map contacts that currently exist in the world, one per contact like
+     * {@link #beginContact}.
+     * Used after bodies are moved directly, so later end events still balance the counter.
+     */
+    public void resync(World world) {
+        numContacts = 0;
+        for (Contact contact : world.getContactList()) {
+            if (!contact.isTouching()) {
+                continue;
+            }
+            Object a = contact.getFixtureA().getUserData();
+            Object b = contact.getFixtureB().getUserData();
+            if ((a == UserData.PLAYER_SENSOR && b == UserData.MAP_PART) ||
+                    (a == UserData.MAP_PART && b == UserData.PLAYER_SENSOR)) {
+                numContacts++;
+            }
+        }
+    }
 }
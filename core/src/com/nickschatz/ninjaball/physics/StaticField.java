@@ -0,0 +1,444 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.physics;
+
+import com.badlogic.gdx.maps.Map;
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.MapObject;
+import com.badlogic.gdx.maps.objects.*;
+import com.badlogic.gdx.math.Circle;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Logger;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.nickschatz.ninjaball.trigger.Trigger;
+
+/**
+ * The static level geometry rasterized into an occupancy grid, with a signed distance field built from it.
+ * Answers raycasts, nearest surface and line of sight queries against the map in plain Java, for anything
+ * that doesn't care about dynamic bodies and shouldn't pay for a trip through Box2D.
+ *
+ * Distances are in world units, negative inside geometry. Raycasts sphere trace the field, so they step
+ * by the distance to the nearest surface instead of by cell.
+ */
+public class StaticField implements AnchorSource {
+    private static final float INF = 1e20f;
+
+    private final Logger logger;
+    private final float cellSize;
+    private final float units;
+    private float originX;
+    private float originY;
+    private int width;
+    private int height;
+    private boolean[] occupied;
+    private float[] distance;
+
+    /**
+     * @param map uses the solid objects of this layer, triggers and the spawn are skipped.
+     * @param unitsPerPixel conversion ratio from map pixels to world units.
+     * @param cellSize grid resolution in world units.
+     */
+    public StaticField(Map map, String layerName, float unitsPerPixel, float cellSize, int loggingLevel) {
+        this.logger = new Logger("StaticField", loggingLevel);
+        this.cellSize = cellSize;
+        this.units = unitsPerPixel;
+
+        long start = TimeUtils.millis();
+        MapLayer layer = map.getLayers().get(layerName);
+        if (layer == null) {
+            logger.error("layer " + layerName + " does not exist");
+            allocate(new Rectangle(0, 0, cellSize, cellSize));
+        }
+        else {
+            allocate(findBounds(layer));
+            for (MapObject object : layer.getObjects()) {
+                if (isSolid(object)) {
+                    rasterize(object);
+                }
+            }
+        }
+        buildDistanceField();
+        logger.info("built " + width + "x" + height + " field in " + TimeUtils.timeSinceMillis(start) + "ms");
+    }
+
+    /**
+     * @return signed distance to the nearest static surface, interpolated between cell centres.
+     */
+    public float distance(float x, float y) {
+        //Outside the grid, add the distance to its edge to the value at the edge
+        float outX = Math.max(0, Math.max(originX - x, x - (originX + width * cellSize)));
+        float outY = Math.max(0, Math.max(originY - y, y - (originY + height * cellSize)));
+
+        float gx = (x - originX) / cellSize - 0.5f;
+        float gy = (y - originY) / cellSize - 0.5f;
+        int ix = Math.max(0, Math.min(width - 2, (int) Math.floor(gx)));
+        int iy = Math.max(0, Math.min(height - 2, (int) Math.floor(gy)));
+        float fx = Math.max(0, Math.min(1, gx - ix));
+        float fy = Math.max(0, Math.min(1, gy - iy));
+
+        int i = iy * width + ix;
+        float bottom = distance[i] + (distance[i + 1] - distance[i]) * fx;
+        float top = distance[i + width] + (distance[i + width + 1] - distance[i + width]) * fx;
+        float d = bottom + (top - bottom) * fy;
+
+        if (outX > 0 || outY > 0) {
+            d += (float) Math.sqrt(outX * outX + outY * outY);
+        }
+        return d;
+    }
+
+    public boolean isOccupied(float x, float y) {
+        int cx = (int) Math.floor((x - originX) / cellSize);
+        int cy = (int) Math.floor((y - originY) / cellSize);
+        if (cx < 0 || cy < 0 || cx >= width || cy >= height) {
+            return false;
+        }
+        return occupied[cy * width + cx];
+    }
+
+    /**
+     * @return direction away from the nearest surface, from the gradient of the field.
+     */
+    public Vector2 normal(float x, float y, Vector2 out) {
+        float h = cellSize * 0.5f;
+        out.set(distance(x + h, y) - distance(x - h, y), distance(x, y + h) - distance(x, y - h));
+        return out.nor();
+    }
+
+    /**
+     * @return closest point on the static geometry.
+     */
+    public Vector2 nearestSurface(float x, float y, Vector2 out) {
+        float d = distance(x, y);
+        normal(x, y, out);
+        return out.scl(-d).add(x, y);
+    }
+
+    /**
+     * Sphere traces from (x1, y1) towards (x2, y2).
+     *
+     * @param hit set to the first point on the geometry, untouched on a miss.
+     * @return fraction of the segment where it hit, or -1 if the segment is clear.
+     */
+    @Override
+    public float rayCast(float x1, float y1, float x2, float y2, Vector2 hit) {
+        float dx = x2 - x1;
+        float dy = y2 - y1;
+        float length = (float) Math.sqrt(dx * dx + dy * dy);
+        if (length == 0) {
+            return -1;
+        }
+        dx /= length;
+        dy /= length;
+
+        float hitDistance = cellSize * 0.1f;
+        float t = 0;
+        //Every step moves at least hitDistance, so rays grazing a wall take more steps but still end
+        while (t <= length) {
+            float px = x1 + dx * t;
+            float py = y1 + dy * t;
+            float d = distance(px, py);
+            if (d <= hitDistance) {
+                if (hit != null) {
+                    hit.set(px, py);
+                }
+                return t / length;
+            }
+            t += Math.max(d, hitDistance);
+        }
+        return -1;
+    }
+
+    public boolean lineOfSight(float x1, float y1, float x2, float y2) {
+        return rayCast(x1, y1, x2, y2, null) < 0;
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * @return world position of the lower left corner of the grid.
+     */
+    public float getOriginX() {
+        return originX;
+    }
+
+    public float getOriginY() {
+        return originY;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    private static boolean isSolid(MapObject object) {
+        return !(object instanceof TextureMapObject) &&
+                !Trigger.isMarker(object.getProperties().get("type", "none", String.class));
+    }
+
+    private Rectangle findBounds(MapLayer layer) {
+        Rectangle bounds = null;
+        for (MapObject object : layer.getObjects()) {
+            if (!isSolid(object)) {
+                continue;
+            }
+            Rectangle objectBounds = getBounds(object);
+            if (objectBounds == null) {
+                continue;
+            }
+            if (bounds == null) {
+                bounds = new Rectangle(objectBounds);
+            }
+            else {
+                bounds.merge(objectBounds);
+            }
+        }
+        if (bounds == null) {
+            bounds = new Rectangle(0, 0, cellSize, cellSize);
+        }
+        //A free border, so the outside of closed levels is traced like anything else
+        return bounds.set(bounds.x - 2 * cellSize, bounds.y - 2 * cellSize,
+                bounds.width + 4 * cellSize, bounds.height + 4 * cellSize);
+    }
+
+    private Rectangle getBounds(MapObject object) {
+        Rectangle bounds;
+        if (object instanceof RectangleMapObject) {
+            bounds = new Rectangle(((RectangleMapObject) object).getRectangle());
+        }
+        else if (object instanceof PolygonMapObject) {
+            bounds = new Rectangle(((PolygonMapObject) object).getPolygon().getBoundingRectangle());
+        }
+        else if (object instanceof PolylineMapObject) {
+            bounds = boundsOf(((PolylineMapObject) object).getPolyline().getTransformedVertices());
+        }
+        else if (object instanceof CircleMapObject) {
+            Circle circle = ((CircleMapObject) object).getCircle();
+            bounds = new Rectangle(circle.x - circle.radius, circle.y - circle.radius, circle.radius * 2, circle.radius * 2);
+        }
+        else {
+            return null;
+        }
+        return bounds.set(bounds.x / units, bounds.y / units, bounds.width / units, bounds.height / units);
+    }
+
+    private static Rectangle boundsOf(float[] vertices) {
+        float minX = vertices[0], minY = vertices[1], maxX = minX, maxY = minY;
+        for (int i = 2; i < vertices.length; i += 2) {
+            minX = Math.min(minX, vertices[i]);
+            maxX = Math.max(maxX, vertices[i]);
+            minY = Math.min(minY, vertices[i + 1]);
+            maxY = Math.max(maxY, vertices[i + 1]);
+        }
+        return new Rectangle(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    private void allocate(Rectangle bounds) {
+        originX = bounds.x;
+        originY = bounds.y;
+        width = Math.max(2, (int) Math.ceil(bounds.width / cellSize));
+        height = Math.max(2, (int) Math.ceil(bounds.height / cellSize));
+        occupied = new boolean[width * height];
+        distance = new float[width * height];
+    }
+
+    private void rasterize(MapObject object) {
+        if (object instanceof PolylineMapObject) {
+            float[] vertices = ((PolylineMapObject) object).getPolyline().getTransformedVertices();
+            for (int i = 0; i + 3 < vertices.length; i += 2) {
+                markSegment(vertices[i] / units, vertices[i + 1] / units, vertices[i + 2] / units, vertices[i + 3] / units);
+            }
+            return;
+        }
+
+        Rectangle bounds = getBounds(object);
+        if (bounds == null) {
+            logger.error("unsupported shape " + object);
+            return;
+        }
+        float[] polygon = object instanceof PolygonMapObject ?
+                ((PolygonMapObject) object).getPolygon().getTransformedVertices() : null;
+        Circle circle = object instanceof CircleMapObject ? ((CircleMapObject) object).getCircle() : null;
+
+        int minX = Math.max(0, (int) Math.floor((bounds.x - originX) / cellSize));
+        int maxX = Math.min(width - 1, (int) Math.floor((bounds.x + bounds.width - originX) / cellSize));
+        int minY = Math.max(0, (int) Math.floor((bounds.y - originY) / cellSize));
+        int maxY = Math.min(height - 1, (int) Math.floor((bounds.y + bounds.height - originY) / cellSize));
+        boolean coveredCentre = false;
+        for (int cy = minY; cy <= maxY; cy++) {
+            for (int cx = minX; cx <= maxX; cx++) {
+                //Cell centre, back in map pixels for the shape tests
+                float px = (originX + (cx + 0.5f) * cellSize) * units;
+                float py = (originY + (cy + 0.5f) * cellSize) * units;
+                boolean inside;
+                if (polygon != null) {
+                    inside = containsPoint(polygon, px, py);
+                }
+                else if (circle != null) {
+                    inside = circle.contains(px, py);
+                }
+                else {
+                    inside = bounds.contains(px / units, py / units); //Rectangle, the bounds are the shape
+                }
+                if (inside) {
+                    occupied[cy * width + cx] = true;
+                    coveredCentre = true;
+                }
+            }
+        }
+        //Shapes thinner than a cell may not cover any cell centre, keep their outline
+        if (coveredCentre) {
+            return;
+        }
+        if (polygon != null) {
+            for (int i = 0; i < polygon.length; i += 2) {
+                int j = (i + 2) % polygon.length;
+                markSegment(polygon[i] / units, polygon[i + 1] / units, polygon[j] / units, polygon[j + 1] / units);
+            }
+        }
+        else if (circle == null) {
+            float x2 = bounds.x + bounds.width;
+            float y2 = bounds.y + bounds.height;
+            markSegment(bounds.x, bounds.y, x2, bounds.y);
+            markSegment(x2, bounds.y, x2, y2);
+            markSegment(x2, y2, bounds.x, y2);
+            markSegment(bounds.x, y2, bounds.x, bounds.y);
+        }
+    }
+
+    /**
+     * Marks every cell a segment passes through, sampling at half a cell.
+     */
+    private void markSegment(float x1, float y1, float x2, float y2) {
+        float length = Vector2.len(x2 - x1, y2 - y1);
+        int samples = Math.max(1, (int) Math.ceil(length / (cellSize * 0.5f)));
+        for (int i = 0; i <= samples; i++) {
+            float t = (float) i / samples;
+            int cx = (int) Math.floor((x1 + (x2 - x1) * t - originX) / cellSize);
+            int cy = (int) Math.floor((y1 + (y2 - y1) * t - originY) / cellSize);
+            if (cx >= 0 && cy >= 0 && cx < width && cy < height) {
+                occupied[cy * width + cx] = true;
+            }
+        }
+    }
+
+    /**
+     * Even-odd test.
+     */
+    private static boolean containsPoint(float[] polygon, float x, float y) {
+        boolean inside = false;
+        int n = polygon.length;
+        for (int i = 0, j = n - 2; i < n; j = i, i += 2) {
+            float xi = polygon[i], yi = polygon[i + 1];
+            float xj = polygon[j], yj = polygon[j + 1];
+            if ((yi > y) != (yj > y) && x < (xj - xi) * (y - yi) / (yj - yi) + xi) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Exact Euclidean distance transforms of the occupied cells and of the free cells
+     * (Felzenszwalb and Huttenlocher), combined into one signed field.
+     */
+    private void buildDistanceField() {
+        int n = Math.max(width, height);
+        float[] f = new float[n];
+        float[] d = new float[n];
+        int[] v = new int[n];
+        float[] z = new float[n + 1];
+
+        float[] outside = new float[width * height];
+        float[] inside = new float[width * height];
+        for (int i = 0; i < occupied.length; i++) {
+            outside[i] = occupied[i] ? 0 : INF;
+            inside[i] = occupied[i] ? INF : 0;
+        }
+        transform2D(outside, f, d, v, z);
+        transform2D(inside, f, d, v, z);
+
+        for (int i = 0; i < distance.length; i++) {
+            //Squared cell distances between centres, the surface is half a cell from the centre
+            if (occupied[i]) {
+                distance[i] = -((float) Math.sqrt(inside[i]) - 0.5f) * cellSize;
+            }
+            else {
+                distance[i] = ((float) Math.sqrt(outside[i]) - 0.5f) * cellSize;
+            }
+        }
+    }
+
+    private void transform2D(float[] grid, float[] f, float[] d, int[] v, float[] z) {
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                f[y] = grid[y * width + x];
+            }
+            transform1D(f, height, d, v, z);
+            for (int y = 0; y < height; y++) {
+                grid[y * width + x] = d[y];
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(grid, y * width, f, 0, width);
+            transform1D(f, width, d, v, z);
+            System.arraycopy(d, 0, grid, y * width, width);
+        }
+    }
+
+    /**
+     * Lower envelope of parabolas rooted at each sample.
+     */
+    private static void transform1D(float[] f, int n, float[] d, int[] v, float[] z) {
+        int k = 0;
+        v[0] = 0;
+        z[0] = -INF;
+        z[1] = INF;
+        for (int q = 1; q < n; q++) {
+            float s = ((f[q] + q * q) - (f[v[k]] + v[k] * v[k])) / (2 * q - 2 * v[k]);
+            while (s <= z[k]) {
+                k--;
+                s = ((f[q] + q * q) - (f[v[k]] + v[k] * v[k])) / (2 * q - 2 * v[k]);
+            }
+            k++;
+            v[k] = q;
+            z[k] = s;
+            z[k + 1] = INF;
+        }
+        k = 0;
+        for (int q = 0; q < n; q++) {
+            while (z[k + 1] < q) {
+                k++;
+            }
+            float dq = q - v[k];
+            d[q] = dq * dq + f[v[k]];
+        }
+    }
+}
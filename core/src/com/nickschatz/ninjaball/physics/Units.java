@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.physics;
+
+/**
+ * The one place that knows how big things are. Box2D, lights, triggers and the camera all work in metres,
+ * levels are authored in map pixels and the screen is measured in screen pixels.
+ */
+public final class Units {
+    /** Map pixels per metre. A power of two, so pixel aligned map shapes convert to metres exactly. */
+    public static final float PIXELS_PER_METER = 64;
+    /** Screen pixels per metre with the map drawn at half size. */
+    public static final float SCREEN_PIXELS_PER_METER = PIXELS_PER_METER / 2;
+
+    private Units() {
+    }
+
+    public static float toMeters(float pixels) {
+        return pixels / PIXELS_PER_METER;
+    }
+
+    public static float toPixels(float meters) {
+        return meters * PIXELS_PER_METER;
+    }
+
+    /**
+     * @return how many metres of the world a length of the screen shows.
+     */
+    public static float screenToMeters(float screenPixels) {
+        return screenPixels / SCREEN_PIXELS_PER_METER;
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.physics;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.utils.IntArray;
+import com.nickschatz.ninjaball.entity.EntityStore;
+import com.nickschatz.ninjaball.entity.Player;
+import com.nickschatz.ninjaball.entity.Rope;
+
+/**
+ * Captures the dynamic state of a {@link GameWorld} into primitive arrays and rewinds the same world to it.
+ * Map bodies and lights are static, so they are not part of the snapshot.
+ * Entities are stored by spawn index; restoring respawns them from the map and removes the ones that were gone.
+ * One instance can be captured into repeatedly without allocating once the arrays are big enough.
+ */
+public class WorldSnapshot {
+
+    private static final int ROTATION = 0;
+    private static final int PLAYER_X = 1;
+    private static final int PLAYER_Y = 2;
+    private static final int PLAYER_ANGLE = 3;
+    private static final int PLAYER_VX = 4;
+    private static final int PLAYER_VY = 5;
+    private static final int PLAYER_SPIN = 6;
+    private static final int CAMERA_X = 7;
+    private static final int CAMERA_Y = 8;
+    private static final int CAMERA_UP_X = 9;
+    private static final int CAMERA_UP_Y = 10;
+    private static final int ROPE_SEGMENT_LENGTH = 11;
+    private static final int ROPE_PLAYER_LINK = 12;
+    private static final int ROPE_START = 13;
+    private static final int FLOATS_PER_SEGMENT = 4;
+    private static final int FLOATS_PER_ENTITY = 6;
+
+    private static final int STEP_COUNT = 0;
+    private static final int CAN_JUMP = 1;
+    private static final int ROPE_SEGMENTS = 2;
+    private static final int PICKUPS = 3;
+    private static final int ENTITY_COUNT = 4;
+    private static final int ENTITY_START = 5;
+
+    private float[] floats = new float[ROPE_START];
+    private int[] ints = new int[ENTITY_START];
+    private int[] slotOfSpawn = new int[0];
+    private final IntArray removedIds = new IntArray();
+    private boolean hasCamera;
+    private boolean captured = false;
+
+    /**
+     * @param camera may be null, then the camera is left alone on restore.
+     */
+    public void capture(GameWorld gameWorld, Camera camera) {
+        Player player = gameWorld.getPlayer();
+        Body body = player.getBody();
+        Rope rope = player.getRope();
+        int segments = rope == null ? 0 : rope.getSegmentCount();
+        EntityStore entities = gameWorld.getEntities();
+        int entityCount = entities.getCount();
+
+        int entityStart = ROPE_START + segments * FLOATS_PER_SEGMENT;
+        int size = entityStart + entityCount * FLOATS_PER_ENTITY;
+        if (floats.length < size) {
+            floats = new float[size];
+        }
+        if (ints.length < ENTITY_START + entityCount) {
+            ints = new int[ENTITY_START + entityCount];
+        }
+
+        floats[ROTATION] = gameWorld.getRotation();
+        floats[PLAYER_X] = body.getPosition().x;
+        floats[PLAYER_Y] = body.getPosition().y;
+        floats[PLAYER_ANGLE] = body.getAngle();
+        floats[PLAYER_VX] = body.getLinearVelocity().x;
+        floats[PLAYER_VY] = body.getLinearVelocity().y;
+        floats[PLAYER_SPIN] = body.getAngularVelocity();
+
+        hasCamera = camera != null;
+        if (hasCamera) {
+            floats[CAMERA_X] = camera.position.x;
+            floats[CAMERA_Y] = camera.position.y;
+            floats[CAMERA_UP_X] = camera.up.x;
+            floats[CAMERA_UP_Y] = camera.up.y;
+        }
+
+        if (rope != null) {
+            floats[ROPE_SEGMENT_LENGTH] = rope.getSegmentLength();
+            floats[ROPE_PLAYER_LINK] = rope.getPlayerLinkLength();
+            for (int i = 0; i < segments; i++) {
+                Body segment = rope.getSegment(i);
+                int offset = ROPE_START + i * FLOATS_PER_SEGMENT;
+                floats[offset] = segment.getPosition().x;
+                floats[offset + 1] = segment.getPosition().y;
+                floats[offset + 2] = segment.getLinearVelocity().x;
+                floats[offset + 3] = segment.getLinearVelocity().y;
+            }
+        }
+
+        for (int i = 0; i < entityCount; i++) {
+            Body entity = entities.getBody(i);
+            int offset = entityStart + i * FLOATS_PER_ENTITY;
+            floats[offset] = entity.getPosition().x;
+            floats[offset + 1] = entity.getPosition().y;
+            floats[offset + 2] = entity.getAngle();
+            floats[offset + 3] = entity.getLinearVelocity().x;
+            floats[offset + 4] = entity.getLinearVelocity().y;
+            floats[offset + 5] = entity.getAngularVelocity();
+            ints[ENTITY_START + i] = entities.getSpawnIndex(i);
+        }
+
+        ints[STEP_COUNT] = gameWorld.getStepCount();
+        ints[CAN_JUMP] = player.canJump() ? 1 : 0;
+        ints[ROPE_SEGMENTS] = player.hasRope() ? segments : -1;
+        ints[PICKUPS] = gameWorld.getPickups();
+        ints[ENTITY_COUNT] = entityCount;
+        captured = true;
+    }
+
+    /**
+     * Rewinds the world in place. A rope with the same shape is moved back, anything else is rebuilt.
+     *
+     * @param camera may be null, then the camera is left alone.
+     */
+    public void restore(GameWorld gameWorld, Camera camera) {
+        if (!captured) {
+            throw new IllegalStateException("Nothing captured");
+        }
+        Player player = gameWorld.getPlayer();
+        Body body = player.getBody();
+
+        gameWorld.setRotation(floats[ROTATION]);
+        body.setTransform(floats[PLAYER_X], floats[PLAYER_Y], floats[PLAYER_ANGLE]);
+        body.setLinearVelocity(floats[PLAYER_VX], floats[PLAYER_VY]);
+        body.setAngularVelocity(floats[PLAYER_SPIN]);
+        body.setAwake(true);
+
+        restoreRope(gameWorld, player);
+        restoreEntities(gameWorld);
+
+        if (camera != null && hasCamera) {
+            camera.position.x = floats[CAMERA_X];
+            camera.position.y = floats[CAMERA_Y];
+            camera.up.set(floats[CAMERA_UP_X], floats[CAMERA_UP_Y], 0);
+            camera.update();
+        }
+
+        //Contacts from before the restore still exist until the next step, so count those to keep begin/end balanced
+        gameWorld.getMapContactExecutor().resync(gameWorld.getWorld());
+        player.setCanJump(ints[CAN_JUMP] != 0);
+        gameWorld.setStepCount(ints[STEP_COUNT]);
+        gameWorld.setPickups(ints[PICKUPS]);
+    }
+
+    /**
+     * Right after a respawn the dense index of every entity is its spawn index. Collected pickups and killed
+     * enemies are removed again only once all bodies are placed, since removing reorders the store.
+     */
+    private void restoreEntities(GameWorld gameWorld) {
+        gameWorld.respawnEntities();
+        EntityStore entities = gameWorld.getEntities();
+        int spawnedCount = entities.getCount();
+        int entityStart = ROPE_START + Math.max(ints[ROPE_SEGMENTS], 0) * FLOATS_PER_SEGMENT;
+
+        if (slotOfSpawn.length < spawnedCount) {
+            slotOfSpawn = new int[spawnedCount];
+        }
+        for (int i = 0; i < spawnedCount; i++) {
+            slotOfSpawn[i] = -1;
+        }
+        for (int slot = 0; slot < ints[ENTITY_COUNT]; slot++) {
+            slotOfSpawn[ints[ENTITY_START + slot]] = slot;
+        }
+
+        removedIds.clear();
+        for (int i = 0; i < spawnedCount; i++) {
+            int slot = slotOfSpawn[i];
+            if (slot < 0) {
+                removedIds.add(entities.getId(i));
+                continue;
+            }
+            Body entity = entities.getBody(i);
+            int offset = entityStart + slot * FLOATS_PER_ENTITY;
+            entity.setTransform(floats[offset], floats[offset + 1], floats[offset + 2]);
+            entity.setLinearVelocity(floats[offset + 3], floats[offset + 4]);
+            entity.setAngularVelocity(floats[offset + 5]);
+            entity.setAwake(true);
+        }
+        for (int i = 0; i < removedIds.size; i++) {
+            entities.remove(removedIds.get(i));
+        }
+        entities.syncFromBodies();
+    }
+
+    private void restoreRope(GameWorld gameWorld, Player player) {
+        int segments = ints[ROPE_SEGMENTS];
+        if (segments < 0) {
+            player.removeRope();
+            return;
+        }
+
+        Rope rope = player.getRope();
+        if (!matches(rope, segments)) {
+            player.setRope(new Rope(player, gameWorld.getWorld(), floats, ROPE_START, segments,
+                    floats[ROPE_SEGMENT_LENGTH], floats[ROPE_PLAYER_LINK], FLOATS_PER_SEGMENT));
+            rope = player.getRope();
+        }
+        for (int i = 0; i < segments; i++) {
+            Body segment = rope.getSegment(i);
+            int offset = ROPE_START + i * FLOATS_PER_SEGMENT;
+            segment.setTransform(floats[offset], floats[offset + 1], 0);
+            segment.setLinearVelocity(floats[offset + 2], floats[offset + 3]);
+            segment.setAwake(true);
+        }
+    }
+
+    private boolean matches(Rope rope, int segments) {
+        if (rope == null || rope.getSegmentCount() != segments) {
+            return false;
+        }
+        if (rope.getSegmentLength() != floats[ROPE_SEGMENT_LENGTH] || rope.getPlayerLinkLength() != floats[ROPE_PLAYER_LINK]) {
+            return false;
+        }
+        //Same anchor means the same throw
+        return segments == 0 || rope.getSegment(0).getPosition().epsilonEquals(floats[ROPE_START], floats[ROPE_START + 1], 0.001f);
+    }
+
+    public boolean isCaptured() {
+        return captured;
+    }
+
+    public int getStepCount() {
+        return ints[STEP_COUNT];
+    }
+
+    public Vector2 getPlayerPosition(Vector2 out) {
+        return out.set(floats[PLAYER_X], floats[PLAYER_Y]);
+    }
+}
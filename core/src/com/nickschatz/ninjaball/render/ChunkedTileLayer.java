@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.render;
+
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.tiled.TiledMapTile;
+import com.badlogic.gdx.maps.tiled.TiledMapTileSets;
+import com.badlogic.gdx.utils.IntMap;
+
+/**
+ * A tile layer that only stores the parts of the map that have tiles in them. The layer is cut into
+ * {@link #CHUNK_SIZE} square chunks and a chunk is only allocated once a tile is set in it. A tile is
+ * kept as its Tiled global id, with the flip flags in the top three bits, so a chunk is a plain int array.
+ *
+ * Unlike {@link com.badlogic.gdx.maps.tiled.TiledMapTileLayer} there are no cell objects, draw it with
+ * {@link ChunkedTiledMapRenderer}.
+ */
+public class ChunkedTileLayer extends MapLayer {
+    public static final int CHUNK_SIZE = 16;
+    private static final int CHUNK_SHIFT = 4;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    public static final int FLIP_HORIZONTALLY = 0x80000000;
+    public static final int FLIP_VERTICALLY = 0x40000000;
+    public static final int FLIP_DIAGONALLY = 0x20000000;
+    public static final int FLIP_MASK = FLIP_HORIZONTALLY | FLIP_VERTICALLY | FLIP_DIAGONALLY;
+
+    private final int width;
+    private final int height;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int chunksWide;
+    private final int chunksHigh;
+    private final TiledMapTileSets tileSets;
+    private final IntMap<int[]> chunks = new IntMap<int[]>();
+
+    /**
+     * @param tileSets resolves the stored ids, normally those of the map the layer is in.
+     */
+    public ChunkedTileLayer(int width, int height, int tileWidth, int tileHeight, TiledMapTileSets tileSets) {
+        this.width = width;
+        this.height = height;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.tileSets = tileSets;
+        chunksWide = (width + CHUNK_MASK) >> CHUNK_SHIFT;
+        chunksHigh = (height + CHUNK_MASK) >> CHUNK_SHIFT;
+    }
+
+    /**
+     * @return the global id and flip flags at a tile, 0 if it is empty or outside the layer.
+     */
+    public int getId(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return 0;
+        }
+        int[] chunk = chunks.get(chunkIndex(x >> CHUNK_SHIFT, y >> CHUNK_SHIFT));
+        return chunk == null ? 0 : chunk[(y & CHUNK_MASK) << CHUNK_SHIFT | (x & CHUNK_MASK)];
+    }
+
+    /**
+     * @param id global id with flip flags, as in the map file, 0 to clear the tile.
+     */
+    public void setId(int x, int y, int id) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            throw new IndexOutOfBoundsException("tile " + x + ", " + y + " is outside the layer");
+        }
+        int index = chunkIndex(x >> CHUNK_SHIFT, y >> CHUNK_SHIFT);
+        int[] chunk = chunks.get(index);
+        if (chunk == null) {
+            if (id == 0) {
+                return;
+            }
+            chunk = new int[CHUNK_SIZE * CHUNK_SIZE];
+            chunks.put(index, chunk);
+        }
+        chunk[(y & CHUNK_MASK) << CHUNK_SHIFT | (x & CHUNK_MASK)] = id;
+    }
+
+    /**
+     * @return the tiles of a chunk, row by row from the bottom, or null if the chunk is empty. Do not modify.
+     */
+    public int[] getChunk(int chunkX, int chunkY) {
+        if (chunkX < 0 || chunkY < 0 || chunkX >= chunksWide || chunkY >= chunksHigh) {
+            return null;
+        }
+        return chunks.get(chunkIndex(chunkX, chunkY));
+    }
+
+    /**
+     * @return the tile for an id from {@link #getId}, null if the id is empty or unknown.
+     */
+    public TiledMapTile getTile(int id) {
+        if (id == 0) {
+            return null;
+        }
+        return tileSets.getTile(id & ~FLIP_MASK);
+    }
+
+    private int chunkIndex(int chunkX, int chunkY) {
+        return chunkY * chunksWide + chunkX;
+    }
+
+    public int getChunkCount() {
+        return chunks.size;
+    }
+
+    /**
+     * @return bytes held by the tile chunks, not counting the map that indexes them.
+     */
+    public int getChunkBytes() {
+        return chunks.size * CHUNK_SIZE * CHUNK_SIZE * 4;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getTileWidth() {
+        return tileWidth;
+    }
+
+    public int getTileHeight() {
+        return tileHeight;
+    }
+}
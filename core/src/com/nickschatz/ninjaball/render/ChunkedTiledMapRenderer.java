@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.render;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.MapObject;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTile;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.maps.tiled.renderers.OrthogonalTiledMapRenderer;
+
+/**
+ * Orthogonal renderer that also draws {@link ChunkedTileLayer}s. Only chunks that overlap the view
+ * and have tiles in them are visited, empty space costs nothing.
+ */
+public class ChunkedTiledMapRenderer extends OrthogonalTiledMapRenderer {
+
+    public ChunkedTiledMapRenderer(TiledMap map, float unitScale, Batch batch) {
+        super(map, unitScale, batch);
+    }
+
+    @Override
+    public void render() {
+        beginRender();
+        for (MapLayer layer : map.getLayers()) {
+            renderLayer(layer);
+        }
+        endRender();
+    }
+
+    @Override
+    public void render(int[] layers) {
+        beginRender();
+        for (int layer : layers) {
+            renderLayer(map.getLayers().get(layer));
+        }
+        endRender();
+    }
+
+    private void renderLayer(MapLayer layer) {
+        if (!layer.isVisible()) {
+            return;
+        }
+        if (layer instanceof ChunkedTileLayer) {
+            renderTileLayer((ChunkedTileLayer) layer);
+        }
+        else if (layer instanceof TiledMapTileLayer) {
+            renderTileLayer((TiledMapTileLayer) layer);
+        }
+        else {
+            for (MapObject object : layer.getObjects()) {
+                renderObject(object);
+            }
+        }
+    }
+
+    public void renderTileLayer(ChunkedTileLayer layer) {
+        Color batchColor = spriteBatch.getColor();
+        float color = Color.toFloatBits(batchColor.r, batchColor.g, batchColor.b, batchColor.a * layer.getOpacity());
+
+        float layerTileWidth = layer.getTileWidth() * unitScale;
+        float layerTileHeight = layer.getTileHeight() * unitScale;
+
+        //Same visible range as OrthogonalTiledMapRenderer, one tile of margin for oversized tiles
+        int col1 = Math.max(0, (int) (viewBounds.x / layerTileWidth));
+        int col2 = Math.min(layer.getWidth() - 1, (int) ((viewBounds.x + viewBounds.width + layerTileWidth) / layerTileWidth));
+        int row1 = Math.max(0, (int) (viewBounds.y / layerTileHeight));
+        int row2 = Math.min(layer.getHeight() - 1, (int) ((viewBounds.y + viewBounds.height + layerTileHeight) / layerTileHeight));
+
+        int size = ChunkedTileLayer.CHUNK_SIZE;
+        for (int chunkY = row2 / size; chunkY >= row1 / size; chunkY--) {
+            for (int chunkX = col1 / size; chunkX <= col2 / size; chunkX++) {
+                int[] chunk = layer.getChunk(chunkX, chunkY);
+                if (chunk == null) {
+                    continue;
+                }
+                int rowStart = Math.max(row1, chunkY * size);
+                int rowEnd = Math.min(row2, chunkY * size + size - 1);
+                int colStart = Math.max(col1, chunkX * size);
+                int colEnd = Math.min(col2, chunkX * size + size - 1);
+                for (int row = rowEnd; row >= rowStart; row--) {
+                    int rowOffset = (row - chunkY * size) * size - chunkX * size;
+                    for (int col = colStart; col <= colEnd; col++) {
+                        int id = chunk[rowOffset + col];
+                        TiledMapTile tile = layer.getTile(id);
+                        if (tile != null) {
+                            drawTile(tile, id, col * layerTileWidth, row * layerTileHeight, color);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void drawTile(TiledMapTile tile, int id, float x, float y, float color) {
+        TextureRegion region = tile.getTextureRegion();
+        float x1 = x + tile.getOffsetX() * unitScale;
+        float y1 = y + tile.getOffsetY() * unitScale;
+        float x2 = x1 + region.getRegionWidth() * unitScale;
+        float y2 = y1 + region.getRegionHeight() * unitScale;
+
+        setCorner(Batch.X1, x1, y1, 0, 1, id, region, color);
+        setCorner(Batch.X2, x1, y2, 0, 0, id, region, color);
+        setCorner(Batch.X3, x2, y2, 1, 0, id, region, color);
+        setCorner(Batch.X4, x2, y1, 1, 1, id, region, color);
+        spriteBatch.draw(region.getTexture(), vertices, 0, vertices.length);
+    }
+
+    /**
+     * Fills one corner of the quad. The corner is given in image space, y down, and the flips are undone
+     * in the order Tiled applies them: diagonal, then horizontal, then vertical.
+     */
+    private void setCorner(int offset, float x, float y, int u, int v, int id, TextureRegion region, float color) {
+        if ((id & ChunkedTileLayer.FLIP_VERTICALLY) != 0) {
+            v = 1 - v;
+        }
+        if ((id & ChunkedTileLayer.FLIP_HORIZONTALLY) != 0) {
+            u = 1 - u;
+        }
+        if ((id & ChunkedTileLayer.FLIP_DIAGONALLY) != 0) {
+            int swap = u;
+            u = v;
+            v = swap;
+        }
+        vertices[offset] = x;
+        vertices[offset + 1] = y;
+        vertices[offset + 2] = color;
+        vertices[offset + 3] = u == 0 ? region.getU() : region.getU2();
+        vertices[offset + 4] = v == 0 ? region.getV() : region.getV2();
+    }
+}
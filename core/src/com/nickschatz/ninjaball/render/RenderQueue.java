@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.render;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Pool;
+
+import java.util.Comparator;
+
+/**
+ * Collects sprites with their texture and blend state and submits them to a SpriteBatch
+ * sorted by state, so the batch only flushes when it really has to. Sprites with the same
+ * state keep the order they were queued in.
+ *
+ * Also counts draw calls and state changes over a frame.
+ */
+public class RenderQueue {
+    public static final int LAYER_ENTITIES = 0;
+
+    public static final int BLEND_SRC_DEFAULT = GL20.GL_SRC_ALPHA;
+    public static final int BLEND_DST_DEFAULT = GL20.GL_ONE_MINUS_SRC_ALPHA;
+
+    private final Array<Entry> entries = new Array<Entry>(false, 128);
+    private final Array<Entry> layerEntries = new Array<Entry>(false, 128);
+    private final Pool<Entry> entryPool = new Pool<Entry>() {
+        @Override
+        protected Entry newObject() {
+            return new Entry();
+        }
+    };
+    private final Comparator<Entry> stateOrder = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            if (a.blendSrc != b.blendSrc) return a.blendSrc < b.blendSrc ? -1 : 1;
+            if (a.blendDst != b.blendDst) return a.blendDst < b.blendDst ? -1 : 1;
+            int handleA = a.region.getTexture().getTextureObjectHandle();
+            int handleB = b.region.getTexture().getTextureObjectHandle();
+            if (handleA != handleB) return handleA < handleB ? -1 : 1;
+            return a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1);
+        }
+    };
+
+    private float color = Color.WHITE.toFloatBits();
+    private int sequence = 0;
+
+    private Texture lastTexture;
+    private int drawCalls = 0;
+    private int stateChanges = 0;
+    private int lastDrawCalls = 0;
+    private int lastStateChanges = 0;
+
+    /**
+     * Sets the tint of sprites queued from now on.
+     */
+    public void setColor(Color tint) {
+        color = tint.toFloatBits();
+    }
+
+    public void draw(int layer, TextureRegion region, float x, float y, float originX, float originY,
+                     float width, float height, float scaleX, float scaleY, float rotation) {
+        draw(layer, region, x, y, originX, originY, width, height, scaleX, scaleY, rotation,
+                BLEND_SRC_DEFAULT, BLEND_DST_DEFAULT);
+    }
+
+    public void draw(int layer, TextureRegion region, float x, float y, float originX, float originY,
+                     float width, float height, float scaleX, float scaleY, float rotation,
+                     int blendSrc, int blendDst) {
+        Entry entry = entryPool.obtain();
+        entry.layer = layer;
+        entry.region = region;
+        entry.x = x;
+        entry.y = y;
+        entry.originX = originX;
+        entry.originY = originY;
+        entry.width = width;
+        entry.height = height;
+        entry.scaleX = scaleX;
+        entry.scaleY = scaleY;
+        entry.rotation = rotation;
+        entry.color = color;
+        entry.blendSrc = blendSrc;
+        entry.blendDst = blendDst;
+        entry.sequence = sequence++;
+        entries.add(entry);
+    }
+
+    /**
+     * Draws every sprite queued for the layer with the fewest state changes and leaves the
+     * batch with the default blend function and color. The batch must be drawing.
+     */
+    public void flush(SpriteBatch batch, int layer) {
+        for (int i = entries.size - 1; i >= 0; i--) {
+            Entry entry = entries.get(i);
+            if (entry.layer == layer) {
+                layerEntries.add(entry);
+                entries.removeIndex(i);
+            }
+        }
+        if (layerEntries.size == 0) {
+            return;
+        }
+        layerEntries.sort(stateOrder);
+
+        for (Entry entry : layerEntries) {
+            if (entry.blendSrc != batch.getBlendSrcFunc() || entry.blendDst != batch.getBlendDstFunc()) {
+                batch.setBlendFunction(entry.blendSrc, entry.blendDst);
+                stateChanges++;
+            }
+            if (entry.region.getTexture() != lastTexture) {
+                lastTexture = entry.region.getTexture();
+                stateChanges++;
+            }
+            batch.setColor(entry.color);
+            batch.draw(entry.region, entry.x, entry.y, entry.originX, entry.originY, entry.width, entry.height,
+                    entry.scaleX, entry.scaleY, entry.rotation);
+        }
+        if (batch.getBlendSrcFunc() != BLEND_SRC_DEFAULT || batch.getBlendDstFunc() != BLEND_DST_DEFAULT) {
+            batch.setBlendFunction(BLEND_SRC_DEFAULT, BLEND_DST_DEFAULT);
+            stateChanges++;
+        }
+        batch.setColor(Color.WHITE);
+
+        entryPool.freeAll(layerEntries);
+        layerEntries.clear();
+    }
+
+    /**
+     * Adds the draw calls of a finished batch pass to this frame's count. Call right after
+     * {@link SpriteBatch#end()}.
+     */
+    public void countDrawCalls(SpriteBatch batch) {
+        drawCalls += batch.renderCalls;
+    }
+
+    /**
+     * Publishes this frame's counters and starts counting the next one. Anything still queued
+     * is dropped.
+     */
+    public void endFrame() {
+        lastDrawCalls = drawCalls;
+        lastStateChanges = stateChanges;
+        drawCalls = 0;
+        stateChanges = 0;
+        lastTexture = null;
+        sequence = 0;
+        color = Color.WHITE.toFloatBits();
+        entryPool.freeAll(entries);
+        entries.clear();
+    }
+
+    /**
+     * @return draw calls counted over the last finished frame.
+     */
+    public int getDrawCalls() {
+        return lastDrawCalls;
+    }
+
+    /**
+     * @return blend function and texture switches over the last finished frame.
+     */
+    public int getStateChanges() {
+        return lastStateChanges;
+    }
+
+    private static class Entry {
+        int layer;
+        TextureRegion region;
+        float x, y;
+        float originX, originY;
+        float width, height;
+        float scaleX, scaleY;
+        float rotation;
+        float color;
+        int blendSrc, blendDst;
+        int sequence;
+    }
+}
@@ -23,57 +23,70 @@
 
 package com.nickschatz.ninjaball.screen;
 
-import box2dLight.RayHandler;
 import com.badlogic.gdx.Application;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input;
 import com.badlogic.gdx.Screen;
 import com.badlogic.gdx.audio.Music;
+import com.badlogic.gdx.audio.Sound;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
 import com.badlogic.gdx.maps.tiled.TiledMap;
-import com.badlogic.gdx.maps.tiled.TiledMapRenderer;
-import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
-import com.badlogic.gdx.maps.tiled.renderers.OrthogonalTiledMapRenderer;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.physics.box2d.Box2DDebugRenderer;
-import com.badlogic.gdx.physics.box2d.Fixture;
-import com.badlogic.gdx.physics.box2d.RayCastCallback;
-import com.badlogic.gdx.physics.box2d.World;
 import com.badlogic.gdx.scenes.scene2d.Actor;
 import com.badlogic.gdx.scenes.scene2d.Stage;
 import com.badlogic.gdx.scenes.scene2d.ui.*;
 import com.badlogic.gdx.scenes.scene2d.utils.ChangeListener;
+import com.badlogic.gdx.utils.Disposable;
 import com.badlogic.gdx.utils.Logger;
+import com.badlogic.gdx.utils.ScreenUtils;
+import com.badlogic.gdx.utils.TimeUtils;
 import com.badlogic.gdx.utils.viewport.ScreenViewport;
+import com.nickschatz.ninjaball.Level;
 import com.nickschatz.ninjaball.NinjaBallGame;
 import com.nickschatz.ninjaball.Resources;
+import com.nickschatz.ninjaball.audio.AudioManager;
+import com.nickschatz.ninjaball.endless.ChunkStreamer;
 import com.nickschatz.ninjaball.entity.Player;
+import com.nickschatz.ninjaball.ghost.Ghost;
+import com.nickschatz.ninjaball.ghost.GhostRecorder;
 import com.nickschatz.ninjaball.input.GameInput;
-import com.nickschatz.ninjaball.physics.ContactListenerDelegate;
-import com.nickschatz.ninjaball.physics.PlayerExitContactExecutor;
-import com.nickschatz.ninjaball.physics.PlayerMapContactExecutor;
-import com.nickschatz.ninjaball.util.MapBodyManager;
+import com.nickschatz.ninjaball.input.InputQueue;
+import com.nickschatz.ninjaball.perf.GLProfiler;
+import com.nickschatz.ninjaball.perf.LatencyProbe;
+import com.nickschatz.ninjaball.perf.QualityGovernor;
+import com.nickschatz.ninjaball.perf.QualityTier;
+import com.nickschatz.ninjaball.physics.GameWorld;
+import com.nickschatz.ninjaball.physics.Units;
+import com.nickschatz.ninjaball.physics.WorldSnapshot;
+import com.nickschatz.ninjaball.render.ChunkedTileLayer;
+import com.nickschatz.ninjaball.render.ChunkedTiledMapRenderer;
+import com.nickschatz.ninjaball.render.RenderQueue;
+import com.nickschatz.ninjaball.trigger.Trigger;
+import com.nickschatz.ninjaball.util.LightSettings;
+import com.nickschatz.ninjaball.util.ResourceTracker;
+import com.nickschatz.ninjaball.util.ScaledRenderTarget;
 import com.nickschatz.ninjaball.util.TiledLightManager;
 import com.nickschatz.ninjaball.util.Util;
 
-public class GameScreen implements Screen {
+public class GameScreen implements Screen, QualityGovernor.Listener {
 
 
-    private ContactListenerDelegate contactListenerDelegate;
     private TiledLightManager lightManager;
     private Box2DDebugRenderer debugRenderer;
-    private World world;
+    private GameWorld gameWorld;
     private OrthographicCamera camera;
     private NinjaBallGame game;
-    private float rotation = 0.0f;
     private float rotationRate = 1f;
-    private MapBodyManager mapBodyManager;
-    private TiledMapRenderer mapRenderer;
+    private ChunkedTiledMapRenderer mapRenderer;
     private ShapeRenderer shapeRenderer;
 
 
@@ -87,44 +100,77 @@ public class GameScreen implements Screen {
     private Table table;
     private Skin skin;
 
-    private Vector2 playerGrav;
     private Slider sensitivitySlider;
 
-    private final float ROT_LIMIT = 90;
-
     private float camBBsize;
 
-    private float mapScale = 0.5f;
-
+    /**
+     * Simulated time per step. Steps run at {@link #STEP_PERIOD_NANOS} of real time, which keeps the speed
+     * the game was tuned at when it stepped 1/30s once per 60Hz frame.
+     */
+    private static final float STEP_TIME = GameWorld.STEP_TIME;
+    private static final long STEP_PERIOD_NANOS = 1000000000L / 60;
+    private static final int MAX_STEPS_PER_FRAME = 4;
+    /** Effect voices, well below the streams SoundPool gets on Android. */
+    private static final int SOUND_VOICES = 4;
+    private static final long SOUND_LENGTH_MS = 200;
+    /** Render thread time per frame for putting generated chunks of an endless level into the world. */
+    private static final long STREAM_BUDGET_NANOS = 2000000L;
+    private final AudioManager audio = new AudioManager(SOUND_VOICES, Logger.INFO);
+    private final InputQueue inputQueue = new InputQueue(64);
+    private long nextStepNanos;
+    //Both null in endless mode, where a run has no end to record against and would grow the recording forever
+    private GhostRecorder ghostRecorder;
+    private Ghost ghost;
+
+    private Level level;
+    private final ResourceTracker resources = new ResourceTracker(this);
     private Music curMusic;
 
-    public GameScreen(final NinjaBallGame game, TiledMap map, Music curMusic) {
+    private QualityGovernor qualityGovernor;
+    private ScaledRenderTarget renderTarget;
+    private RenderQueue renderQueue;
+    private final WorldSnapshot checkpoint = new WorldSnapshot();
+    private final Vector2 ropeAnchorPos = new Vector2();
+    private boolean ropePressStepped = false;
+    private final Matrix4 screenMatrix = new Matrix4();
+    private TextureRegion backdrop;
+    private ChunkStreamer streamer;
+
+    public GameScreen(final NinjaBallGame game, final Level level) {
         this.game = game;
-        this.map = map;
-        this.curMusic = curMusic;
+        this.level = level;
+        this.map = level.getMap();
+        this.curMusic = level.getMusic();
         camera = new OrthographicCamera();
-        camera.setToOrtho(false, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
-
-        world = new World(new Vector2(0, -10), true);
+        camera.setToOrtho(false, Units.screenToMeters(Gdx.graphics.getWidth()), Units.screenToMeters(Gdx.graphics.getHeight()));
+
+        gameWorld = resources.track(new GameWorld(map, Gdx.files.internal("data/materials.json"),
+                Resources.get().get(Level.ATLAS, TextureAtlas.class), Application.LOG_DEBUG), "GameWorld");
+        thePlayer = gameWorld.getPlayer();
+        thePlayer.setEffects(
+                audio.register(Resources.get().get(Level.JUMP_SOUND, Sound.class), 2, 2, SOUND_LENGTH_MS),
+                audio.register(Resources.get().get(Level.ROPE_SOUND, Sound.class), 1, 1, SOUND_LENGTH_MS));
         debugRenderer = new Box2DDebugRenderer();
+        resources.track(new Disposable() {
+            @Override
+            public void dispose() {
+                debugRenderer.dispose(); //Not a Disposable in this version of libGDX
+            }
+        }, "Box2DDebugRenderer");
 
-        thePlayer = new Player(world, 100, 300, 10f);
-        contactListenerDelegate = new ContactListenerDelegate();
-        contactListenerDelegate.addContactExecutor(new PlayerMapContactExecutor(thePlayer));
-        contactListenerDelegate.addContactExecutor(new PlayerExitContactExecutor(this));
-        world.setContactListener(contactListenerDelegate);
-
-        mapBodyManager = new MapBodyManager(world, 1/mapScale, Gdx.files.internal("data/materials.json"), Application.LOG_DEBUG);
-
-        mapRenderer = new OrthogonalTiledMapRenderer(map, mapScale, game.batch);
-        mapBodyManager.createPhysics(map, "physics");
+        mapRenderer = new ChunkedTiledMapRenderer(map, 1 / Units.PIXELS_PER_METER, game.batch);
+        ChunkedTileLayer background = (ChunkedTileLayer) map.getLayers().get("background");
+        ChunkedTileLayer foreground = (ChunkedTileLayer) map.getLayers().get("foreground");
+        game.log.debug("tile layers hold " + (background.getChunkCount() + foreground.getChunkCount()) + " chunks, " +
+                (background.getChunkBytes() + foreground.getChunkBytes()) + " bytes");
 
 
 
-        stage = new Stage(new ScreenViewport(), game.batch);
+        stage = resources.track(new Stage(new ScreenViewport(), game.batch), "Stage");
 
         TextureAtlas atlas = Resources.get().get("data/uiskin.atlas", TextureAtlas.class);
-        skin = new Skin(Gdx.files.internal("data/uiskin.json"));
+        skin = resources.track(new Skin(Gdx.files.internal("data/uiskin.json")), "Skin");
         skin.addRegions(atlas);
 
         debugLabel = new Label("Debug!", skin);
@@ -135,18 +181,17 @@ public class GameScreen implements Screen {
         table.setFillParent(true);
         stage.addActor(table);
 
-        shapeRenderer = new ShapeRenderer();
+        shapeRenderer = resources.track(new ShapeRenderer(), "ShapeRenderer");
 
 
         sensitivitySlider = new Slider(0.5f, 2f, 0.1f, false, skin);
-        sensitivitySlider.setValue(Gdx.app.getPreferences("Options").getFloat("rotSensitivity", 1f));
+        sensitivitySlider.setValue(game.options.getFloat("rotSensitivity", 1f));
         sensitivitySlider.addListener(new ChangeListener() {
 
             @Override
             public void changed(ChangeEvent event, Actor actor) {
                 Slider slider = (Slider) actor;
-                Gdx.app.getPreferences("Options").putFloat("rotSensitivity", slider.getValue());
-                Gdx.app.getPreferences("Options").flush();
+                game.options.putFloat("rotSensitivity", slider.getValue());
             }
         });
 
@@ -160,33 +205,139 @@ public class GameScreen implements Screen {
             }
         });
         table.add(returnButton).padBottom(50).row();
+        TextButton retryButton = new TextButton("Retry", skin);
+        retryButton.addListener(new ChangeListener() {
+            @Override
+            public void changed(ChangeEvent event, Actor actor) {
+                retry();
+            }
+        });
+        table.add(retryButton).padBottom(50).row();
+        final TextButton lightingButton = new TextButton("Lighting: " + game.lightSettings.getName(), skin);
+        lightingButton.addListener(new ChangeListener() {
+            @Override
+            public void changed(ChangeEvent event, Actor actor) {
+                LightSettings next = game.lightSettings.next();
+                game.setLightSettings(next);
+                applyQuality(qualityGovernor.getTier());
+                lightingButton.setText("Lighting: " + next.getName());
+            }
+        });
+        table.add(lightingButton).padBottom(50).row();
+        final TextButton probeButton = new TextButton("Latency probe: " + (game.latencyProbe.isEnabled() ? "on" : "off"), skin);
+        probeButton.addListener(new ChangeListener() {
+            @Override
+            public void changed(ChangeEvent event, Actor actor) {
+                boolean enabled = !game.latencyProbe.isEnabled();
+                game.latencyProbe.setEnabled(enabled);
+                game.options.putBoolean("latencyProbe", enabled);
+                probeButton.setText("Latency probe: " + (enabled ? "on" : "off"));
+            }
+        });
+        table.add(probeButton).padBottom(50).row();
+        final TextButton profilerButton = new TextButton("GL profiler: " + (game.glProfiler.isEnabled() ? "on" : "off"), skin);
+        profilerButton.addListener(new ChangeListener() {
+            @Override
+            public void changed(ChangeEvent event, Actor actor) {
+                boolean enabled = !game.glProfiler.isEnabled();
+                game.glProfiler.setEnabled(enabled);
+                game.options.putBoolean("glProfiler", enabled);
+                profilerButton.setText("GL profiler: " + (enabled ? "on" : "off"));
+            }
+        });
+        table.add(profilerButton).padBottom(50).row();
         TextButton exitButton = new TextButton("Exit", skin);
         exitButton.addListener(new ChangeListener() {
             @Override
             public void changed(ChangeEvent event, Actor actor) {
                 game.setScreen(new MenuScreen(game));
-                dispose();
+                curMusic.stop();
+                level.unloadMusic();
             }
         });
         table.add(exitButton);
 
-        lightManager = new TiledLightManager(new RayHandler(world), map, "lights", Logger.DEBUG);
+        lightManager = resources.track(new TiledLightManager(gameWorld.getWorld(), map, "lights", game.lightSettings, Logger.DEBUG), "TiledLightManager");
         lightManager.setAmbientLight(new Color(0.01f, 0.01f, 0.01f, 1f));
         lightManager.setCulling(false); //Culling doesn't work well with rotation
 
-        Gdx.input.setInputProcessor(new GameInput(this, stage));
+        if (level.isEndless()) {
+            streamer = resources.track(new ChunkStreamer(gameWorld.getMapBodyManager(), lightManager, map,
+                    MathUtils.random.nextLong(), Logger.INFO), "ChunkStreamer");
+            gameWorld.setAnchorSource(streamer);
+        }
+
+        renderTarget = resources.track(new ScaledRenderTarget(), "ScaledRenderTarget");
+        renderQueue = new RenderQueue();
+        qualityGovernor = new QualityGovernor(this, 60, 1, Logger.INFO);
+
+        Gdx.input.setInputProcessor(new GameInput(this, stage, inputQueue, game.latencyProbe));
         Gdx.input.setCatchBackKey(true);
 
         camBBsize = (float) Math.sqrt((camera.viewportWidth*camera.viewportWidth)+(camera.viewportHeight*camera.viewportHeight));
 
-        game.batch.setBlendFunction(GL20.GL_BLEND_SRC_RGB, GL20.GL_BLEND_DST_RGB);
-
         curMusic.setLooping(true);
         curMusic.play();
+
+        checkpoint.capture(gameWorld, camera);
+        if (!level.isEndless()) {
+            ghostRecorder = new GhostRecorder();
+            ghostRecorder.record(thePlayer);
+            ghost = Ghost.fromBase64(game.progress.getGhost(level),
+                    Resources.get().get(Level.ATLAS, TextureAtlas.class).findRegion("rope"));
+        }
+        resetStepClock();
     }
 
     @Override
     public void render(float delta) {
+        if (isPaused && backdrop != null) {
+            drawBackdrop();
+        }
+        else {
+            renderScene(delta);
+            if (isPaused) {
+                //Nothing under the pause menu moves, so keep this frame and only redraw the stage on top of it
+                backdrop = ScreenUtils.getFrameBufferTexture();
+            }
+        }
+        //Everything after this is unlit
+
+        Trigger sign = gameWorld.getCurrentSign();
+        if (!isPaused && sign != null && sign.getText() != null) {
+            screenMatrix.setToOrtho2D(0, 0, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+            game.batch.setProjectionMatrix(screenMatrix);
+            game.batch.begin();
+            game.defaultFont.drawWrapped(game.batch, sign.getText(), 20, Gdx.graphics.getHeight() - 20, Gdx.graphics.getWidth() - 40);
+            game.batch.end();
+            renderQueue.countDrawCalls(game.batch);
+        }
+
+        if (isPaused) {
+
+            debugLabel.setText(gameWorld.getStats().describe() + "\nFPS: " + Gdx.graphics.getFramesPerSecond() +
+                    " Draw calls: " + renderQueue.getDrawCalls() + " State changes: " + renderQueue.getStateChanges());
+            debugLabel.pack();
+
+            game.glProfiler.setPhase(GLProfiler.PHASE_STAGE, null);
+            stage.draw();
+            game.glProfiler.setPhase(GLProfiler.PHASE_OTHER, null);
+            renderQueue.countDrawCalls(game.batch);
+        }
+        if (game.glProfiler.isEnabled()) {
+            screenMatrix.setToOrtho2D(0, 0, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+            game.batch.setProjectionMatrix(screenMatrix);
+            game.batch.begin();
+            game.defaultFont.drawMultiLine(game.batch, game.glProfiler.describe(), Gdx.graphics.getWidth() - 360, 120);
+            game.batch.end();
+        }
+        game.glProfiler.endFrame();
+        game.latencyProbe.frameDrawn();
+        renderQueue.endFrame();
+    }
+
+    private void renderScene(float delta) {
+        renderTarget.begin();
         Gdx.gl.glClearColor(135f/255f, 206f/255f, 235f/255f, 1);
         //Gdx.gl.glClearColor(0, 1, 0, 1);
         Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
@@ -195,6 +346,7 @@ public class GameScreen implements Screen {
         game.batch.enableBlending();
 
         if (!isPaused) {
+            qualityGovernor.update(delta);
 
             rotationRate = sensitivitySlider.getValue();
             float lerp = 0.1f;
@@ -202,7 +354,7 @@ public class GameScreen implements Screen {
             position.x += (thePlayer.getPosition().x - position.x) * lerp;
             position.y += (thePlayer.getPosition().y - position.y) * lerp;
 
-            float minCamX = 600 * (Gdx.graphics.getWidth()/1280);
+            float minCamX = Units.screenToMeters(600) * (Gdx.graphics.getWidth()/1280);
             float minCamY = 0;
             if (camera.position.x < minCamX) {
                 camera.position.x = minCamX;
@@ -211,49 +363,14 @@ public class GameScreen implements Screen {
                 camera.position.y = minCamY;
             }
 
-            if (!game.useAccelerometer) {
-                rotation += (Gdx.input.isKeyPressed(Input.Keys.LEFT) ? -rotationRate : 0) +
-                        (Gdx.input.isKeyPressed(Input.Keys.RIGHT) ? rotationRate : 0);
-            }
-            else {
-                rotation = Gdx.input.getAccelerometerY() * 9; //Shift values from [10...-10] to [90...-90]
-
-            }
-
-            if (rotation > ROT_LIMIT) {
-                rotation = ROT_LIMIT;
-            }
-            else if (rotation < -ROT_LIMIT) {
-                rotation = -ROT_LIMIT;
-            }
-            if (!game.useAccelerometer) {
-                camera.rotate(new Vector3(0, 0, 1),
-                        (Util.getCameraCurrentXYAngle(camera) + rotation)
-                );
-            }
-
-            playerGrav = world.getGravity().cpy().rotate(rotation).scl(thePlayer.getBody().getMass());
-
             shapeRenderer.setProjectionMatrix(camera.combined);
-            if ((Gdx.input.isTouched() && Gdx.input.getX() <= Gdx.graphics.getWidth() / 2) || Gdx.input.isKeyPressed(Input.Keys.X)) {
-                final Vector2 ropeAnchorPos = new Vector2(0,0);
-
-                world.rayCast(new RayCastCallback() {
-                                  @Override
-                                  public float reportRayFixture(Fixture fixture, Vector2 point, Vector2 normal, float fraction) {
-
-                                      ropeAnchorPos.set(point);
-
-                                      return fraction;
-                                  }
-                              },
-                        thePlayer.getPosition(),
-                        thePlayer.getPosition().cpy().add(playerGrav.cpy().rotate(180).nor().scl(300)));
-                boolean hit = true;
-                if (ropeAnchorPos.len() == 0) {
-                    ropeAnchorPos.set(thePlayer.getPosition().cpy().add(playerGrav.cpy().rotate(180).nor().scl(300)));
-                    hit = false;
-                }
+            //The rope fires on press, so the aim only shows until the press has been stepped
+            boolean aiming = (Gdx.input.isTouched() && Gdx.input.getX() <= Gdx.graphics.getWidth() / 2) || Gdx.input.isKeyPressed(Input.Keys.X);
+            if (!aiming) {
+                ropePressStepped = false;
+            }
+            if (aiming && !ropePressStepped) {
+                boolean hit = gameWorld.findRopeAnchor(ropeAnchorPos);
 
                 shapeRenderer.begin(ShapeRenderer.ShapeType.Line);
                 if (hit) {
@@ -266,51 +383,159 @@ public class GameScreen implements Screen {
                 shapeRenderer.end();
             }
 
-            //Apply fake gravity
-            thePlayer.getBody().applyForce(
-                    playerGrav,
-                    thePlayer.getBody().getWorldCenter(), true);
-
-            world.step(1 / 30f, 6, 2);
+            if (streamer != null) {
+                streamer.update(thePlayer.getPosition().x, STREAM_BUDGET_NANOS);
+            }
+            if (streamer == null || streamer.isLoaded(thePlayer.getPosition().x)) {
+                stepSimulation();
+            }
+            else {
+                //The ground under the player isn't in the world yet, hold the simulation until it is
+                resetStepClock();
+            }
+            audio.update();
 
+            if (!game.useAccelerometer) {
+                camera.rotate(new Vector3(0, 0, 1),
+                        (Util.getCameraCurrentXYAngle(camera) + gameWorld.getRotation())
+                );
+            }
         }
 
         mapRenderer.setView(camera.combined,camera.position.x - camBBsize / 2, camera.position.y - camBBsize / 2, camBBsize, camBBsize); //Dirty Fix. I should do something about it.
         game.batch.begin();
+        game.glProfiler.setPhase(GLProfiler.PHASE_TILES, game.batch);
         mapRenderer.renderTileLayer(
-                (TiledMapTileLayer) map.
+                (ChunkedTileLayer) map.
                         getLayers().
                         get("background"));
         //debugRenderer.render(world, camera.combined);
 
+        game.glProfiler.setPhase(GLProfiler.PHASE_SPRITES, game.batch);
         if (thePlayer.hasRope()) {
-            thePlayer.getRope().draw(game.batch);
+            thePlayer.getRope().draw(renderQueue);
         }
+        gameWorld.getEntities().draw(renderQueue);
+        if (ghost != null) {
+            //Fraction of the way to the next step, so the ghost moves smoothly between samples
+            float alpha = 1 - (nextStepNanos - TimeUtils.nanoTime()) / (float) STEP_PERIOD_NANOS;
+            ghost.draw(renderQueue, thePlayer, Math.max(0, Math.min(1, alpha)));
+        }
+        thePlayer.draw(renderQueue);
+        renderQueue.flush(game.batch, RenderQueue.LAYER_ENTITIES);
 
-        thePlayer.draw(game.batch);
-
-        mapRenderer.renderTileLayer((TiledMapTileLayer) map.getLayers().get("foreground"));
+        game.glProfiler.setPhase(GLProfiler.PHASE_TILES, game.batch);
+        mapRenderer.renderTileLayer((ChunkedTileLayer) map.getLayers().get("foreground"));
         game.batch.end();
+        if (streamer != null) {
+            streamer.render(camera.combined);
+        }
+        game.glProfiler.setPhase(GLProfiler.PHASE_OTHER, null);
+        renderQueue.countDrawCalls(game.batch);
+        renderTarget.end(game.batch);
 
         //Everything before this is lit
+        game.glProfiler.setPhase(GLProfiler.PHASE_LIGHTS, null);
         lightManager.setCombinedMatrix(camera.combined);
         lightManager.updateAndRender();
-        //Everything after this is unlit
-
-        if (isPaused) {
+        game.glProfiler.setPhase(GLProfiler.PHASE_OTHER, null);
+    }
 
-            debugLabel.setText("Rotation: " + rotation + " FPS: " + Gdx.graphics.getFramesPerSecond() + " J: " + thePlayer.canJump());
+    private void drawBackdrop() {
+        Gdx.gl.glClearColor(0, 0, 0, 1);
+        Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+        screenMatrix.setToOrtho2D(0, 0, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+        game.batch.setProjectionMatrix(screenMatrix);
+        game.batch.disableBlending();
+        game.batch.begin();
+        game.batch.draw(backdrop, 0, 0, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+        game.batch.end();
+        game.batch.enableBlending();
+        renderQueue.countDrawCalls(game.batch);
+    }
 
-            stage.draw();
+    private void disposeBackdrop() {
+        if (backdrop != null) {
+            backdrop.getTexture().dispose();
+            backdrop = null;
         }
     }
 
 
 
 
+    /**
+     * Runs the fixed steps that are due by now. Each step first applies the input events that happened
+     * before its boundary, so an action lands on the step it belongs to regardless of frame timing.
+     */
+    private void stepSimulation() {
+        long now = TimeUtils.nanoTime();
+        if (now - nextStepNanos > MAX_STEPS_PER_FRAME * STEP_PERIOD_NANOS) {
+            //Too far behind, drop the backlog instead of spiralling
+            nextStepNanos = now - (MAX_STEPS_PER_FRAME - 1) * STEP_PERIOD_NANOS;
+        }
+        while (nextStepNanos <= now) {
+            while (inputQueue.hasEventBefore(nextStepNanos)) {
+                int type = inputQueue.peekType();
+                game.latencyProbe.stepped(LatencyProbe.KIND_ACTION, inputQueue.peekTime());
+                inputQueue.poll();
+                if (type == InputQueue.JUMP) {
+                    gameWorld.jump();
+                }
+                else if (type == InputQueue.ROPE) {
+                    gameWorld.rope();
+                    ropePressStepped = true;
+                }
+            }
+            updateRotation();
+            gameWorld.step(STEP_TIME);
+            nextStepNanos += STEP_PERIOD_NANOS;
+            if (ghostRecorder != null) {
+                ghostRecorder.record(thePlayer);
+            }
+            if (ghost != null) {
+                ghost.step();
+            }
+
+            if (gameWorld.isExitReached()) {
+                nextLevel();
+                return;
+            }
+            if (gameWorld.isPlayerHit()) {
+                retry();
+                return;
+            }
+        }
+    }
+
+    private void updateRotation() {
+        float rotation = gameWorld.getRotation();
+        if (!game.useAccelerometer) {
+            rotation += (Gdx.input.isKeyPressed(Input.Keys.LEFT) ? -rotationRate : 0) +
+                    (Gdx.input.isKeyPressed(Input.Keys.RIGHT) ? rotationRate : 0);
+            game.latencyProbe.rotationKeyStepped();
+        }
+        else {
+            rotation = Gdx.input.getAccelerometerY() * 9; //Shift values from [10...-10] to [90...-90]
+            //The backend doesn't expose sensor event times, so this measures from the moment it is read
+            game.latencyProbe.stepped(LatencyProbe.KIND_ACCELEROMETER, TimeUtils.nanoTime());
+        }
+        gameWorld.setRotation(rotation);
+    }
+
+    /**
+     * Starts stepping from now and forgets queued input, after a pause or a restore.
+     */
+    private void resetStepClock() {
+        nextStepNanos = TimeUtils.nanoTime();
+        inputQueue.clear();
+    }
+
     @Override
     public void resize(int width, int height) {
-
+        lightManager.resize(width, height);
+        disposeBackdrop();
+        Gdx.graphics.requestRendering();
     }
 
     @Override
@@ -320,7 +545,8 @@ public class GameScreen implements Screen {
 
     @Override
     public void hide() {
-
+        disposeBackdrop();
+        Gdx.graphics.setContinuousRendering(true);
     }
 
     @Override
@@ -330,39 +556,75 @@ public class GameScreen implements Screen {
 
     @Override
     public void resume() {
-
+        //The backdrop texture is unmanaged and does not survive a context loss
+        disposeBackdrop();
+        Gdx.graphics.requestRendering();
     }
 
     @Override
     public void dispose() {
-        //mapBodyManager.destroyPhysics();
-        //lightManager.dispose();
-        //world.dispose();
+        disposeBackdrop();
+        resources.dispose();
+    }
+
+    @Override
+    public void applyQuality(QualityTier tier) {
+        LightSettings lightSettings = LightSettings.cheaperOf(tier.getLightSettings(), game.lightSettings);
+        if (lightSettings != lightManager.getSettings()) {
+            lightManager.applySettings(lightSettings);
+        }
+        lightManager.setRayScale(tier.getRayScale());
+        lightManager.setShadows(tier.hasShadows());
+        renderTarget.setScale(tier.getRenderScale());
     }
 
     public void togglePause() {
         isPaused = !isPaused;
-        if (isPaused)
+        if (isPaused) {
             curMusic.pause();
-        else
+            audio.stopAll();
+            Gdx.graphics.setContinuousRendering(false);
+            Gdx.graphics.requestRendering();
+        }
+        else {
+            disposeBackdrop();
+            Gdx.graphics.setContinuousRendering(true);
             curMusic.play();
+            resetStepClock();
+        }
     }
 
     public boolean isPaused() {
         return isPaused;
     }
 
-    public void rope() {
-        thePlayer.throwRope(playerGrav, world);
-    }
-
-    public void jump() {
-        thePlayer.jump(playerGrav);
+    /**
+     * Rewinds to the start of the level without reloading the map or lights.
+     */
+    public void retry() {
+        checkpoint.restore(gameWorld, camera);
+        if (ghostRecorder != null) {
+            ghostRecorder.reset();
+            ghostRecorder.record(thePlayer);
+        }
+        if (ghost != null) {
+            ghost.restart();
+        }
+        if (isPaused) {
+            togglePause();
+        }
+        resetStepClock();
     }
 
     public void nextLevel() {
+        float time = gameWorld.getStepCount() * STEP_TIME;
+        if (game.progress.submitTime(level, time) && ghostRecorder != null) {
+            game.log.info("New best time on " + level.getName() + ": " + time + "s, ghost is " +
+                    ghostRecorder.getSize() + " bytes");
+            game.progress.putGhost(level, ghostRecorder.toBase64());
+        }
         game.setScreen(new MenuScreen(game));
         curMusic.stop();
-        dispose();
+        level.unloadMusic();
     }
 }
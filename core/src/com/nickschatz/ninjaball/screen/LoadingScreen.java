@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.screen;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.nickschatz.ninjaball.Level;
+import com.nickschatz.ninjaball.NinjaBallGame;
+import com.nickschatz.ninjaball.Resources;
+
+/**
+ * Shown between the menu and a level while the level's assets finish loading.
+ */
+public class LoadingScreen implements Screen {
+    private final NinjaBallGame game;
+    private final Level level;
+    private final OrthographicCamera camera;
+    private final String phase;
+
+    public LoadingScreen(NinjaBallGame game, Level level) {
+        this.game = game;
+        this.level = level;
+        this.phase = "level " + level.getName();
+        camera = new OrthographicCamera();
+        camera.setToOrtho(false, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+
+        game.loadTimings.begin(phase);
+    }
+
+    @Override
+    public void render(float delta) {
+        if (level.isLoaded()) {
+            game.loadTimings.end(phase);
+            game.setScreen(new GameScreen(game, level));
+            return;
+        }
+
+        Gdx.gl.glClearColor(0, 0, 0, 1);
+        Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+        game.batch.setProjectionMatrix(camera.combined);
+        game.batch.begin();
+        game.defaultFont.draw(game.batch, "Loading... " + (int) (Resources.get().getProgress() * 100) + "%", 100, 100);
+        game.batch.end();
+    }
+
+    @Override
+    public void resize(int width, int height) {
+        camera.setToOrtho(false, width, height);
+    }
+
+    @Override
+    public void show() {
+
+    }
+
+    @Override
+    public void hide() {
+
+    }
+
+    @Override
+    public void pause() {
+
+    }
+
+    @Override
+    public void resume() {
+
+    }
+
+    @Override
+    public void dispose() {
+
+    }
+}
@@ -25,7 +25,6 @@ package com.nickschatz.ninjaball.screen;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Screen;
-import com.badlogic.gdx.audio.Music;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.g2d.TextureAtlas;
 import com.badlogic.gdx.scenes.scene2d.Actor;
@@ -39,17 +38,19 @@ import com.badlogic.gdx.utils.viewport.ScreenViewport;
 import com.nickschatz.ninjaball.Levels;
 import com.nickschatz.ninjaball.NinjaBallGame;
 import com.nickschatz.ninjaball.Resources;
+import com.nickschatz.ninjaball.util.ResourceTracker;
 
 public class MenuScreen implements Screen {
     private Skin skin;
     private Table table;
     private Stage stage;
     private NinjaBallGame game;
+    private final ResourceTracker resources = new ResourceTracker(this);
 
     public MenuScreen(final NinjaBallGame game) {
         this.game = game;
 
-        stage = new Stage(new ScreenViewport(), game.batch);
+        stage = resources.track(new Stage(new ScreenViewport(), game.batch), "Stage");
         Label.LabelStyle style = new Label.LabelStyle();
         style.font = game.defaultFont;
 
@@ -61,16 +62,23 @@ public class MenuScreen implements Screen {
         table.setScale(1.1f);
         stage.addActor(table);
         TextureAtlas atlas = Resources.get().get("data/uiskin.atlas", TextureAtlas.class);
-        skin = new Skin(Gdx.files.internal("data/uiskin.json"));
+        skin = resources.track(new Skin(Gdx.files.internal("data/uiskin.json")), "Skin");
         skin.addRegions(atlas);
 
         TextButton startButton = new TextButton("Play", skin);
         startButton.addListener(new ChangeListener() {
             public void changed(ChangeEvent event, Actor actor) {
-                game.setScreen(new GameScreen(game, Levels.level1, Resources.get().get("data/music/Master of the Feast.mp3", Music.class)));
+                game.startLevel(Levels.LEVEL1);
             }
         });
-        table.add(startButton);
+        table.add(startButton).padBottom(50).row();
+        TextButton endlessButton = new TextButton("Endless", skin);
+        endlessButton.addListener(new ChangeListener() {
+            public void changed(ChangeEvent event, Actor actor) {
+                game.startLevel(Levels.ENDLESS);
+            }
+        });
+        table.add(endlessButton);
     }
 
     @Override
@@ -107,6 +115,6 @@ public class MenuScreen implements Screen {
 
     @Override
     public void dispose() {
-
+        resources.dispose();
     }
 }
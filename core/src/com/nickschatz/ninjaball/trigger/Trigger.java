@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.trigger;
+
+import com.badlogic.gdx.math.Rectangle;
+
+/**
+ * An axis aligned region that reacts to the player entering it, without any physics body.
+ */
+public class Trigger {
+    public static final int TYPE_EXIT = 0;
+    public static final int TYPE_SIGN = 1;
+    private static final String[] TYPE_NAMES = {"exit", "sign"};
+    /** Map object type that marks where the player starts. */
+    public static final String SPAWN = "spawn";
+
+    private final int type;
+    private final Rectangle bounds;
+    private final String text;
+
+    public Trigger(int type, Rectangle bounds, String text) {
+        this.type = type;
+        this.bounds = bounds;
+        this.text = text;
+    }
+
+    /**
+     * @return the type constant for a map object "type" property, or -1 if it is not a trigger.
+     */
+    public static int typeForName(String name) {
+        for (int i = 0; i < TYPE_NAMES.length; i++) {
+            if (TYPE_NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return whether a map object with this "type" property is a trigger or the spawn rather than level geometry.
+     */
+    public static boolean isMarker(String name) {
+        return typeForName(name) >= 0 || SPAWN.equals(name);
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public Rectangle getBounds() {
+        return bounds;
+    }
+
+    /**
+     * @return sign text, null for other triggers.
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Circle against box, by distance from the centre to the closest point of the box.
+     */
+    public boolean overlaps(float x, float y, float radius) {
+        float closestX = Math.max(bounds.x, Math.min(x, bounds.x + bounds.width));
+        float closestY = Math.max(bounds.y, Math.min(y, bounds.y + bounds.height));
+        float dx = x - closestX;
+        float dy = y - closestY;
+        return dx * dx + dy * dy <= radius * radius;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.trigger;
+
+import com.badlogic.gdx.maps.Map;
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.MapObject;
+import com.badlogic.gdx.maps.objects.PolygonMapObject;
+import com.badlogic.gdx.maps.objects.RectangleMapObject;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.Logger;
+
+/**
+ * Trigger regions bucketed in a uniform grid. Each step the player's circle is tested against the triggers
+ * in the cells it covers, and the listener hears about triggers it entered or left since the last test.
+ * Triggers never touch Box2D, so they cost no broadphase proxies or contacts.
+ */
+public class TriggerGrid {
+
+    public interface Listener {
+        public void triggerEntered(Trigger trigger);
+        public void triggerExited(Trigger trigger);
+    }
+
+    private final Logger logger;
+    private final float cellSize;
+    private final Array<Trigger> triggers = new Array<Trigger>();
+    private final IntMap<IntArray> cells = new IntMap<IntArray>();
+    private final Listener listener;
+
+    //Per trigger: last test it was a candidate in
+    private final IntArray testedAt = new IntArray();
+    //Triggers the circle is in now and was in after the previous update
+    private IntArray inside = new IntArray();
+    private IntArray wasInside = new IntArray();
+    private int testCount = 0;
+
+    public TriggerGrid(float cellSize, Listener listener, int loggingLevel) {
+        this.logger = new Logger("TriggerGrid", loggingLevel);
+        this.cellSize = cellSize;
+        this.listener = listener;
+    }
+
+    /**
+     * Adds every object of the layer whose "type" property names a trigger. Other objects are ignored.
+     *
+     * @param unitsPerPixel conversion ratio from map pixels to world units.
+     * @return number of triggers added.
+     */
+    public int createTriggers(Map map, String layerName, float unitsPerPixel) {
+        MapLayer layer = map.getLayers().get(layerName);
+        if (layer == null) {
+            logger.error("layer " + layerName + " does not exist");
+            return 0;
+        }
+        int added = 0;
+        for (MapObject object : layer.getObjects()) {
+            String typeName = object.getProperties().get("type", "none", String.class);
+            int type = Trigger.typeForName(typeName);
+            if (type < 0) {
+                continue; //Level geometry, MapBodyManager warns about types nobody knows
+            }
+
+            Rectangle bounds;
+            if (object instanceof RectangleMapObject) {
+                bounds = new Rectangle(((RectangleMapObject) object).getRectangle());
+            }
+            else if (object instanceof PolygonMapObject) {
+                bounds = new Rectangle(((PolygonMapObject) object).getPolygon().getBoundingRectangle());
+            }
+            else {
+                logger.error("unsupported trigger shape " + object);
+                continue;
+            }
+            bounds.set(bounds.x / unitsPerPixel, bounds.y / unitsPerPixel,
+                    bounds.width / unitsPerPixel, bounds.height / unitsPerPixel);
+
+            add(new Trigger(type, bounds, object.getProperties().get("text", String.class)));
+            logger.info("found " + typeName);
+            added++;
+        }
+        return added;
+    }
+
+    public void add(Trigger trigger) {
+        int index = triggers.size;
+        triggers.add(trigger);
+        testedAt.add(-1);
+
+        Rectangle bounds = trigger.getBounds();
+        int minX = cell(bounds.x);
+        int maxX = cell(bounds.x + bounds.width);
+        int minY = cell(bounds.y);
+        int maxY = cell(bounds.y + bounds.height);
+        for (int cx = minX; cx <= maxX; cx++) {
+            for (int cy = minY; cy <= maxY; cy++) {
+                int key = key(cx, cy);
+                IntArray cell = cells.get(key);
+                if (cell == null) {
+                    cell = new IntArray(4);
+                    cells.put(key, cell);
+                }
+                cell.add(index);
+            }
+        }
+    }
+
+    /**
+     * Tests a circle against nearby triggers and reports entries and exits.
+     */
+    public void update(float x, float y, float radius) {
+        testCount++;
+        inside.clear();
+
+        int minX = cell(x - radius);
+        int maxX = cell(x + radius);
+        int minY = cell(y - radius);
+        int maxY = cell(y + radius);
+        for (int cx = minX; cx <= maxX; cx++) {
+            for (int cy = minY; cy <= maxY; cy++) {
+                IntArray cell = cells.get(key(cx, cy));
+                if (cell == null) {
+                    continue;
+                }
+                for (int i = 0; i < cell.size; i++) {
+                    int index = cell.get(i);
+                    if (testedAt.get(index) == testCount) {
+                        continue; //Spans several cells, already tested
+                    }
+                    testedAt.set(index, testCount);
+                    if (triggers.get(index).overlaps(x, y, radius)) {
+                        inside.add(index);
+                    }
+                }
+            }
+        }
+
+        //Exits first, so leaving one sign and entering the next ends on the new one
+        for (int i = 0; i < wasInside.size; i++) {
+            int index = wasInside.get(i);
+            if (!inside.contains(index)) {
+                listener.triggerExited(triggers.get(index));
+            }
+        }
+        for (int i = 0; i < inside.size; i++) {
+            int index = inside.get(i);
+            if (!wasInside.contains(index)) {
+                listener.triggerEntered(triggers.get(index));
+            }
+        }
+        IntArray swap = wasInside;
+        wasInside = inside;
+        inside = swap;
+    }
+
+    public int getTriggerCount() {
+        return triggers.size;
+    }
+
+    public Trigger getTrigger(int index) {
+        return triggers.get(index);
+    }
+
+    private int cell(float coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    private static int key(int cx, int cy) {
+        return (cx & 0xffff) << 16 | (cy & 0xffff);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.util;
+
+import com.badlogic.gdx.assets.loaders.FileHandleResolver;
+import com.badlogic.gdx.maps.tiled.AtlasTmxMapLoader;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TmxMapHelper;
+import com.badlogic.gdx.utils.XmlReader.Element;
+import com.nickschatz.ninjaball.render.ChunkedTileLayer;
+
+/**
+ * Loads every tile layer of a map as a {@link ChunkedTileLayer}, so only the chunks with tiles in
+ * them are kept. Everything else loads as with {@link AtlasTmxMapLoader}.
+ */
+public class ChunkedTmxMapLoader extends AtlasTmxMapLoader {
+
+    public ChunkedTmxMapLoader(FileHandleResolver resolver) {
+        super(resolver);
+    }
+
+    @Override
+    protected void loadTileLayer(TiledMap map, Element element) {
+        if (!element.getName().equals("layer")) {
+            return;
+        }
+        int width = element.getIntAttribute("width", 0);
+        int height = element.getIntAttribute("height", 0);
+        ChunkedTileLayer layer = new ChunkedTileLayer(width, height,
+                element.getParent().getIntAttribute("tilewidth", 0),
+                element.getParent().getIntAttribute("tileheight", 0),
+                map.getTileSets());
+        layer.setName(element.getAttribute("name", null));
+        layer.setVisible(element.getIntAttribute("visible", 1) == 1);
+        layer.setOpacity(element.getFloatAttribute("opacity", 1.0f));
+
+        //Rows are stored top first in the file
+        int[] ids = TmxMapHelper.getTileIds(element, width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int id = ids[y * width + x];
+                if (layer.getTile(id) != null) {
+                    layer.setId(x, height - 1 - y, id);
+                }
+            }
+        }
+
+        Element properties = element.getChildByName("properties");
+        if (properties != null) {
+            loadProperties(layer.getProperties(), properties);
+        }
+        map.getLayers().add(layer);
+    }
+}
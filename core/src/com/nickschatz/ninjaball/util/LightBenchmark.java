@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.util;
+
+import box2dLight.PointLight;
+import box2dLight.RayHandler;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Logger;
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Renders a handful of lights into an empty world with every light profile and picks
+ * the most expensive one that stays within the frame budget. Meant to be run once, the
+ * first time the game starts on a device.
+ */
+public class LightBenchmark {
+    private static final int FRAMES = 8;
+    private static final int LIGHTS = 4;
+    private static final float BUDGET_MS = 4f;
+
+    public static LightSettings pickDefault(Logger log) {
+        int width = Gdx.graphics.getWidth();
+        int height = Gdx.graphics.getHeight();
+
+        World world = new World(new Vector2(0, 0), true);
+        OrthographicCamera camera = new OrthographicCamera();
+        camera.setToOrtho(false, width, height);
+
+        LightSettings best = LightSettings.PROFILES[0];
+        for (LightSettings settings : LightSettings.PROFILES) {
+            RayHandler rayHandler = new RayHandler(world,
+                    settings.getLightmapWidth(width),
+                    settings.getLightmapHeight(height));
+            rayHandler.setBlur(settings.getBlurPasses() > 0);
+            if (settings.getBlurPasses() > 0) {
+                rayHandler.setBlurNum(settings.getBlurPasses());
+            }
+            for (int i = 0; i < LIGHTS; i++) {
+                new PointLight(rayHandler, 128, Color.WHITE, width / 2, width * (i + 1) / (LIGHTS + 1), height / 2);
+            }
+            rayHandler.setCombinedMatrix(camera.combined);
+
+            //The first frame compiles and uploads, don't count it
+            rayHandler.updateAndRender();
+            Gdx.gl.glFinish();
+
+            long start = TimeUtils.nanoTime();
+            for (int i = 0; i < FRAMES; i++) {
+                rayHandler.updateAndRender();
+            }
+            Gdx.gl.glFinish();
+            float frameMs = TimeUtils.timeSinceNanos(start) / 1000000f / FRAMES;
+            rayHandler.dispose();
+
+            log.info("light benchmark " + settings + ": " + frameMs + "ms per frame");
+            if (frameMs > BUDGET_MS) {
+                break;
+            }
+            best = settings;
+        }
+        world.dispose();
+
+        log.info("picked light profile " + best);
+        return best;
+    }
+}
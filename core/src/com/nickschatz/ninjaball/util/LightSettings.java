@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.util;
+
+/**
+ * A lighting quality profile. The lightmap scale is the size of the RayHandler
+ * framebuffer relative to the screen, blur passes are the number of gaussian
+ * passes run over it (0 disables blur).
+ */
+public class LightSettings {
+    public static final LightSettings LOW = new LightSettings("Low", 0.125f, 0);
+    public static final LightSettings MEDIUM = new LightSettings("Medium", 0.25f, 1);
+    public static final LightSettings HIGH = new LightSettings("High", 0.5f, 2);
+
+    /**
+     * Ordered from cheapest to most expensive.
+     */
+    public static final LightSettings[] PROFILES = {LOW, MEDIUM, HIGH};
+
+    private final String name;
+    private final float lightmapScale;
+    private final int blurPasses;
+
+    public LightSettings(String name, float lightmapScale, int blurPasses) {
+        this.name = name;
+        this.lightmapScale = lightmapScale;
+        this.blurPasses = blurPasses;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public float getLightmapScale() {
+        return lightmapScale;
+    }
+
+    public int getBlurPasses() {
+        return blurPasses;
+    }
+
+    public int getLightmapWidth(int screenWidth) {
+        return Math.max(1, (int) (screenWidth * lightmapScale));
+    }
+
+    public int getLightmapHeight(int screenHeight) {
+        return Math.max(1, (int) (screenHeight * lightmapScale));
+    }
+
+    /**
+     * @return the next more expensive profile, wrapping around to the cheapest.
+     */
+    public LightSettings next() {
+        int index = indexOf(this);
+        if (index == PROFILES.length) {
+            return MEDIUM;
+        }
+        return PROFILES[(index + 1) % PROFILES.length];
+    }
+
+    /**
+     * @return whichever of the two profiles is cheaper to render.
+     */
+    public static LightSettings cheaperOf(LightSettings a, LightSettings b) {
+        return indexOf(a) <= indexOf(b) ? a : b;
+    }
+
+    private static int indexOf(LightSettings settings) {
+        for (int i = 0; i < PROFILES.length; i++) {
+            if (PROFILES[i] == settings) {
+                return i;
+            }
+        }
+        return PROFILES.length;
+    }
+
+    /**
+     * @return the profile with the given name, or the fallback if there is none.
+     */
+    public static LightSettings forName(String name, LightSettings fallback) {
+        for (LightSettings settings : PROFILES) {
+            if (settings.name.equals(name)) {
+                return settings;
+            }
+        }
+        return fallback;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + lightmapScale + "x, " + blurPasses + " blur)";
+    }
+}
@@ -31,7 +31,7 @@ import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.*;
 import com.badlogic.gdx.utils.*;
-import com.nickschatz.ninjaball.entity.Sign;
+import com.nickschatz.ninjaball.trigger.Trigger;
 
 /**
  * @author David Saltares Márquez david.saltares at gmail.com
@@ -58,6 +58,7 @@ public class MapBodyManager {
     private float units;
     private Array<Body> bodies = new Array<Body>();
     private ObjectMap<String, FixtureDef> materials = new ObjectMap<String, FixtureDef>();
+    private Array<String> warnings = new Array<String>();
 
     /**
      * @param world box2D world to work with.
@@ -100,7 +101,7 @@ public class MapBodyManager {
         MapLayer layer = map.getLayers().get(layerName);
 
         if (layer == null) {
-            logger.error("layer " + layerName + " does not exist");
+            warn("layer " + layerName + " does not exist");
             return;
         }
 
@@ -110,10 +111,15 @@ public class MapBodyManager {
             if (object instanceof TextureMapObject) {
                 continue;
             }
+            String type = object.getProperties().get("type", "none", String.class);
+            if (Trigger.isMarker(type)) {
+                continue; //Exits and signs are handled by TriggerGrid, the spawn by GameWorld
+            }
+            if (!type.equals("none")) {
+                warn("unknown type " + type + " on " + object.getName() + ", kept solid");
+            }
 
             Shape shape;
-            BodyDef bodyDef = new BodyDef();
-            bodyDef.type = BodyDef.BodyType.StaticBody;
 
             if (object instanceof RectangleMapObject) {
                 RectangleMapObject rectangle = (RectangleMapObject) object;
@@ -129,50 +135,68 @@ public class MapBodyManager {
                 shape = getCircle((CircleMapObject) object);
             }
             else {
-                logger.error("unsupported shape " + object);
+                warn("unsupported shape " + object.getClass().getSimpleName() + " " + object.getName());
                 continue;
             }
 
             MapProperties properties = object.getProperties();
-            String material = properties.get("material", "default", String.class);
-            FixtureDef fixtureDef = materials.get(material);
+            createBody(shape, properties.get("material", "default", String.class));
+            shape.dispose();
+        }
+    }
 
-            if (fixtureDef == null) {
-                logger.error("material does not exist " + material + " using default");
-                fixtureDef = materials.get("default");
-            }
+    /**
+     * Creates a static map body the same way as for the shapes of the physics layer, for level geometry
+     * that doesn't come from a map. The body is destroyed with the others in {@link #destroyPhysics()}.
+     *
+     * @param shape in metres, not disposed.
+     * @param material name from the materials file, the default material is used if it doesn't exist.
+     */
+    public Body createBody(Shape shape, String material) {
+        FixtureDef fixtureDef = materials.get(material);
 
+        if (fixtureDef == null) {
+            warn("material does not exist " + material + " using default");
+            fixtureDef = materials.get("default");
+        }
 
+        BodyDef bodyDef = new BodyDef();
+        bodyDef.type = BodyDef.BodyType.StaticBody;
 
+        fixtureDef.shape = shape;
+        //fixtureDef.filter.categoryBits = Env.game.getCategoryBitsManager().getCategoryBits("level");
 
-            fixtureDef.shape = shape;
-            //fixtureDef.filter.categoryBits = Env.game.getCategoryBitsManager().getCategoryBits("level");
+        Body body = world.createBody(bodyDef);
+        Fixture fixture = body.createFixture(fixtureDef);
+        fixture.setUserData(UserData.MAP_PART);
 
-            Body body = world.createBody(bodyDef);
-            Fixture fixture = body.createFixture(fixtureDef);
+        bodies.add(body);
 
-            String objType = object.getProperties().get("type", "none", String.class);
-            if (objType.equals("exit")) {
-                System.out.println("Found exit");
-                fixture.setSensor(true);
-                fixture.setUserData(UserData.EXIT);
-            }
-            else if (objType.equals("sign")) {
-                System.out.println("Found sign");
-                fixture.setSensor(true);
-                fixture.setUserData(new Sign(object.getProperties().get("text", String.class)));
-            }
-            else {
-                fixture.setUserData(UserData.MAP_PART);
-            }
-
-            bodies.add(body);
+        fixtureDef.shape = null;
+        return body;
+    }
 
-            fixtureDef.shape = null;
-            shape.dispose();
+    /**
+     * Destroys a single body created by the manager.
+     */
+    public void destroyBody(Body body) {
+        if (bodies.removeValue(body, true)) {
+            world.destroyBody(body);
         }
     }
 
+    /**
+     * @return everything that was logged as an error so far, for tools that report on levels.
+     */
+    public Array<String> getWarnings() {
+        return warnings;
+    }
+
+    private void warn(String message) {
+        logger.error(message);
+        warnings.add(message);
+    }
+
     /**
      * Destroys every static body that has been created using the manager.
      */
@@ -201,7 +225,7 @@ public class MapBodyManager {
 
             for (JsonValue materialValue : root) {
                 if (!materialValue.has("name")) {
-                    logger.error("material without name");
+                    warn("material without name");
                     continue;
                 }
 
@@ -216,7 +240,7 @@ public class MapBodyManager {
             }
 
         } catch (Exception e) {
-            logger.error("error loading " + materialsFile.name() + " " + e.getMessage());
+            warn("error loading " + materialsFile.name() + " " + e.getMessage());
         }
     }
 
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.util;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.Logger;
+
+/**
+ * Keeps track of the native backed resources (Box2D worlds, framebuffers, shaders, meshes,
+ * stages...) a screen creates, and releases all of them, newest first, when the screen is
+ * disposed.
+ *
+ * Every tracker that has not been disposed yet is remembered, so after a screen transition
+ * {@link #reportLeaks(Object, Logger)} can list whatever a previous screen left alive.
+ */
+public class ResourceTracker implements Disposable {
+    private static final Array<ResourceTracker> live = new Array<ResourceTracker>();
+
+    private final Object owner;
+    private final Array<Disposable> resources = new Array<Disposable>();
+    private final Array<String> names = new Array<String>();
+
+    public ResourceTracker(Object owner) {
+        this.owner = owner;
+        live.add(this);
+    }
+
+    public <T extends Disposable> T track(T resource) {
+        return track(resource, resource.getClass().getName());
+    }
+
+    public <T extends Disposable> T track(T resource, String name) {
+        resources.add(resource);
+        names.add(name);
+        return resource;
+    }
+
+    @Override
+    public void dispose() {
+        for (int i = resources.size - 1; i >= 0; i--) {
+            resources.get(i).dispose();
+        }
+        resources.clear();
+        names.clear();
+        live.removeValue(this, true);
+    }
+
+    /**
+     * Logs every resource still held by a tracker that doesn't belong to the current owner.
+     *
+     * @return the number of leaked resources.
+     */
+    public static int reportLeaks(Object currentOwner, Logger log) {
+        int leaked = 0;
+        for (ResourceTracker tracker : live) {
+            if (tracker.owner == currentOwner) {
+                continue;
+            }
+            for (String name : tracker.names) {
+                log.error("leaked " + name + " from " + tracker.owner);
+                leaked++;
+            }
+        }
+        return leaked;
+    }
+}
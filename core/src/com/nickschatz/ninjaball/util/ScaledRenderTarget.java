@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.util;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Renders everything between {@link #begin()} and {@link #end(SpriteBatch)} into an
+ * offscreen buffer at a fraction of the screen resolution and stretches it back over the
+ * screen. At a scale of 1 it does nothing and drawing goes straight to the screen.
+ */
+public class ScaledRenderTarget implements Disposable {
+    private float scale = 1f;
+    private FrameBuffer frameBuffer;
+    private TextureRegion region;
+    private final OrthographicCamera screenCamera = new OrthographicCamera();
+
+    public void setScale(float scale) {
+        if (scale != this.scale) {
+            this.scale = scale;
+            dispose();
+        }
+    }
+
+    public float getScale() {
+        return scale;
+    }
+
+    public void begin() {
+        if (scale >= 1f) {
+            return;
+        }
+        int width = Math.max(1, (int) (Gdx.graphics.getWidth() * scale));
+        int height = Math.max(1, (int) (Gdx.graphics.getHeight() * scale));
+        if (frameBuffer == null || frameBuffer.getWidth() != width || frameBuffer.getHeight() != height) {
+            dispose();
+            frameBuffer = new FrameBuffer(Pixmap.Format.RGB888, width, height, false);
+            frameBuffer.getColorBufferTexture().setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
+            region = new TextureRegion(frameBuffer.getColorBufferTexture());
+            region.flip(false, true);
+        }
+        frameBuffer.begin();
+    }
+
+    /**
+     * Stops rendering to the buffer and draws it over the whole screen. The batch must not
+     * be drawing, its projection matrix is changed.
+     */
+    public void end(SpriteBatch batch) {
+        if (frameBuffer == null || scale >= 1f) {
+            return;
+        }
+        frameBuffer.end();
+
+        screenCamera.setToOrtho(false, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+        batch.setProjectionMatrix(screenCamera.combined);
+        batch.disableBlending();
+        batch.begin();
+        batch.draw(region, 0, 0, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+        batch.end();
+        batch.enableBlending();
+    }
+
+    @Override
+    public void dispose() {
+        if (frameBuffer != null) {
+            frameBuffer.dispose();
+            frameBuffer = null;
+            region = null;
+        }
+    }
+}
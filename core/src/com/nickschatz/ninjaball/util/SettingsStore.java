@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.util;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Preferences;
+import com.badlogic.gdx.utils.Logger;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.badlogic.gdx.utils.async.AsyncExecutor;
+import com.badlogic.gdx.utils.async.AsyncResult;
+import com.badlogic.gdx.utils.async.AsyncTask;
+
+/**
+ * Write-behind cache in front of a {@link Preferences} file.
+ * Values are read once and then served from memory, changes are collected and written together
+ * once they have settled for {@link #DEBOUNCE_MS}, on the executor's thread where the backend has one.
+ * Only this class may touch the underlying Preferences.
+ */
+public class SettingsStore {
+
+    public static final long DEBOUNCE_MS = 500;
+
+    private final Preferences preferences;
+    private final AsyncExecutor executor;
+    private final Logger log;
+    private final String name;
+
+    private final ObjectMap<String, Object> values = new ObjectMap<String, Object>();
+    private ObjectMap<String, Object> dirty = new ObjectMap<String, Object>();
+    private ObjectMap<String, Object> writing = new ObjectMap<String, Object>();
+    private AsyncResult<Void> pendingWrite;
+    private long lastChange;
+
+    /**
+     * @param executor must run one task at a time, writes are queued on it in order.
+     */
+    public SettingsStore(String name, AsyncExecutor executor, int logLevel) {
+        this.name = name;
+        this.preferences = Gdx.app.getPreferences(name);
+        this.executor = executor;
+        this.log = new Logger("SettingsStore", logLevel);
+    }
+
+    public boolean contains(String key) {
+        if (values.containsKey(key)) {
+            return true;
+        }
+        synchronized (preferences) {
+            return preferences.contains(key);
+        }
+    }
+
+    public float getFloat(String key, float defValue) {
+        Object value = values.get(key);
+        if (value instanceof Float) {
+            return (Float) value;
+        }
+        float stored;
+        synchronized (preferences) {
+            stored = preferences.getFloat(key, defValue);
+        }
+        values.put(key, stored);
+        return stored;
+    }
+
+    public int getInteger(String key, int defValue) {
+        Object value = values.get(key);
+        if (value instanceof Integer) {
+            return (Integer) value;
+        }
+        int stored;
+        synchronized (preferences) {
+            stored = preferences.getInteger(key, defValue);
+        }
+        values.put(key, stored);
+        return stored;
+    }
+
+    public boolean getBoolean(String key, boolean defValue) {
+        Object value = values.get(key);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        boolean stored;
+        synchronized (preferences) {
+            stored = preferences.getBoolean(key, defValue);
+        }
+        values.put(key, stored);
+        return stored;
+    }
+
+    public String getString(String key, String defValue) {
+        Object value = values.get(key);
+        if (value instanceof String) {
+            return (String) value;
+        }
+        String stored;
+        synchronized (preferences) {
+            stored = preferences.getString(key, defValue);
+        }
+        values.put(key, stored);
+        return stored;
+    }
+
+    public void putFloat(String key, float value) {
+        put(key, value);
+    }
+
+    public void putInteger(String key, int value) {
+        put(key, value);
+    }
+
+    public void putBoolean(String key, boolean value) {
+        put(key, value);
+    }
+
+    public void putString(String key, String value) {
+        put(key, value);
+    }
+
+    private void put(String key, Object value) {
+        if (value.equals(values.get(key))) {
+            return;
+        }
+        values.put(key, value);
+        dirty.put(key, value);
+        lastChange = TimeUtils.millis();
+    }
+
+    /**
+     * Call once per frame. Starts a write once changes have settled and the last write is done.
+     */
+    public void update() {
+        if (dirty.size > 0 && TimeUtils.timeSinceMillis(lastChange) >= DEBOUNCE_MS
+                && (pendingWrite == null || pendingWrite.isDone())) {
+            flush(false);
+        }
+    }
+
+    /**
+     * Writes all pending changes now, behind a write that is still running.
+     * Call on pause, there may not be another frame to pick them up.
+     *
+     * @param block wait until they are on disk, for when the app is going away.
+     */
+    public void flush(boolean block) {
+        boolean writeRunning = pendingWrite != null && !pendingWrite.isDone();
+        if (dirty.size > 0) {
+            final ObjectMap<String, Object> batch = dirty;
+            if (writeRunning) {
+                //The running write still owns the other map, this batch goes in a new one behind it
+                dirty = new ObjectMap<String, Object>();
+            }
+            else {
+                //Swap maps so the render thread never touches what is being written
+                dirty = writing;
+                writing = batch;
+            }
+            pendingWrite = executor.submit(new AsyncTask<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    write(batch);
+                    return null;
+                }
+            });
+        }
+        if (block && pendingWrite != null) {
+            pendingWrite.get();
+        }
+    }
+
+    /**
+     * Only the puts hold the lock the getters take, the disk write runs outside it so a first read on the
+     * render thread never waits for it.
+     */
+    private void write(ObjectMap<String, Object> batch) {
+        long start = TimeUtils.millis();
+        synchronized (preferences) {
+            for (ObjectMap.Entry<String, Object> entry : batch.entries()) {
+                Object value = entry.value;
+                if (value instanceof Float) {
+                    preferences.putFloat(entry.key, (Float) value);
+                }
+                else if (value instanceof Integer) {
+                    preferences.putInteger(entry.key, (Integer) value);
+                }
+                else if (value instanceof Boolean) {
+                    preferences.putBoolean(entry.key, (Boolean) value);
+                }
+                else {
+                    preferences.putString(entry.key, value.toString());
+                }
+            }
+        }
+        preferences.flush();
+        log.debug("Wrote " + batch.size + " values to " + name + " in " + TimeUtils.timeSinceMillis(start) + "ms");
+        batch.clear();
+    }
+}
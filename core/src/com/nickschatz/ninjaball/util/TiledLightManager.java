@@ -25,56 +25,189 @@ package com.nickschatz.ninjaball.util;
 
 import box2dLight.PointLight;
 import box2dLight.RayHandler;
+import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.maps.Map;
 import com.badlogic.gdx.maps.MapLayer;
 import com.badlogic.gdx.maps.MapObject;
 import com.badlogic.gdx.maps.MapProperties;
 import com.badlogic.gdx.maps.objects.RectangleMapObject;
 import com.badlogic.gdx.maps.tiled.TiledMap;
 import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
 import com.badlogic.gdx.utils.Logger;
+import com.nickschatz.ninjaball.physics.Units;
 
-public class TiledLightManager {
-    private final RayHandler rayHandler;
+public class TiledLightManager implements Disposable {
+    private static final int MIN_RAYS = 16;
+    /** Soft shadow edge, box2dlights defaults to 2.5 which is far too wide in metres. */
+    private static final float SOFTNESS_LENGTH = Units.toMeters(5);
+
+    private final World world;
     private final Logger log;
+    private final Array<LightDef> lightDefs = new Array<LightDef>();
+    /** The light made for each def, in the same order. */
+    private final Array<PointLight> lights = new Array<PointLight>();
+    private RayHandler rayHandler;
+    private LightSettings settings;
+    private int lightmapWidth;
+    private int lightmapHeight;
+
+    private float rayScale = 1f;
+    private boolean culling = true;
+    private boolean shadows = true;
+    private final Color ambientLight = new Color(0, 0, 0, 0);
 
-    public TiledLightManager(RayHandler rayHandler, TiledMap tiledMap, String layerName, int logLevel) {
-        this.rayHandler = rayHandler;
+    public TiledLightManager(World world, TiledMap tiledMap, String layerName, LightSettings settings, int logLevel) {
+        this.world = world;
         log = new Logger("TiledLightManager", logLevel);
 
-        MapLayer layer = tiledMap.getLayers().get(layerName);
-        if (layer == null) {
-            return;
+        Array<String> warnings = new Array<String>();
+        lightDefs.addAll(parseLights(tiledMap, layerName, warnings));
+        for (String warning : warnings) {
+            log.error(warning);
         }
 
+        applySettings(settings);
+    }
+
+    /**
+     * Reads the lights of a layer without creating anything, so it also works without a GL context.
+     * Positions and distances are authored in map pixels and converted to metres.
+     *
+     * @param warnings receives a message for every object that couldn't be used as a light.
+     */
+    public static Array<LightDef> parseLights(Map map, String layerName, Array<String> warnings) {
+        Array<LightDef> lights = new Array<LightDef>();
+        MapLayer layer = map.getLayers().get(layerName);
+        if (layer == null) {
+            return lights;
+        }
         for (MapObject object : layer.getObjects()) {
-            if (!(object instanceof RectangleMapObject)) continue;
+            if (!(object instanceof RectangleMapObject)) {
+                warnings.add("light " + object.getName() + " is not a rectangle, skipped");
+                continue;
+            }
 
             RectangleMapObject mapObject = (RectangleMapObject) object;
             MapProperties properties = object.getProperties();
-            float r = 0;
-            if (properties.containsKey("r"))
-                r = Float.parseFloat(properties.get("r", String.class))/255F;
-            float g = 0;
-            if (properties.containsKey("g"))
-                g = Float.parseFloat(properties.get("g", String.class))/255F;
-            float b = 0;
-            if (properties.containsKey("b"))
-                b = Float.parseFloat(properties.get("b", String.class))/255F;
-
-            int rays = 256;
-            if (properties.containsKey("rays")) rays = Integer.parseInt(properties.get("rays", String.class));
-            int distance = 512;
-            if (properties.containsKey("distance")) distance = Integer.parseInt(properties.get("distance", String.class));
-
-            new PointLight(rayHandler, rays, new Color(r,g,b,1), distance, mapObject.getRectangle().getX(), mapObject.getRectangle().getY());
+            try {
+                float r = 0;
+                if (properties.containsKey("r"))
+                    r = Float.parseFloat(properties.get("r", String.class))/255F;
+                float g = 0;
+                if (properties.containsKey("g"))
+                    g = Float.parseFloat(properties.get("g", String.class))/255F;
+                float b = 0;
+                if (properties.containsKey("b"))
+                    b = Float.parseFloat(properties.get("b", String.class))/255F;
+
+                int rays = 256;
+                if (properties.containsKey("rays")) rays = Integer.parseInt(properties.get("rays", String.class));
+                int distance = 512;
+                if (properties.containsKey("distance")) distance = Integer.parseInt(properties.get("distance", String.class));
+
+                lights.add(new LightDef(rays, new Color(r, g, b, 1), Units.toMeters(distance),
+                        Units.toMeters(mapObject.getRectangle().getX()), Units.toMeters(mapObject.getRectangle().getY())));
+            } catch (NumberFormatException e) {
+                warnings.add("light " + object.getName() + " has a bad property: " + e.getMessage());
+            }
+        }
+        return lights;
+    }
+
+    /**
+     * Rebuilds the RayHandler with a lightmap framebuffer and blur passes matching the given
+     * settings and the current screen size. The lights parsed from the map are recreated, so
+     * this can be called at any time without reloading the level.
+     */
+    public void applySettings(LightSettings settings) {
+        this.settings = settings;
+        if (rayHandler != null) {
+            rayHandler.dispose();
+        }
+
+        lightmapWidth = settings.getLightmapWidth(Gdx.graphics.getWidth());
+        lightmapHeight = settings.getLightmapHeight(Gdx.graphics.getHeight());
+        rayHandler = new RayHandler(world, lightmapWidth, lightmapHeight);
+        rayHandler.setBlur(settings.getBlurPasses() > 0);
+        if (settings.getBlurPasses() > 0) {
+            rayHandler.setBlurNum(settings.getBlurPasses());
+        }
+        rayHandler.setCulling(culling);
+        rayHandler.setShadows(shadows);
+        rayHandler.setAmbientLight(ambientLight);
+
+        createLights();
+        log.info("lightmap rebuilt with " + settings + ", " + lightDefs.size + " lights");
+    }
+
+    /**
+     * Scales the ray count of every light relative to the count set in the map.
+     */
+    public void setRayScale(float rayScale) {
+        if (rayScale == this.rayScale) {
+            return;
         }
+        this.rayScale = rayScale;
+        rayHandler.removeAll();
+        createLights();
+    }
+
+    private void createLights() {
+        lights.clear();
+        for (LightDef def : lightDefs) {
+            lights.add(createLight(def));
+        }
+    }
+
+    private PointLight createLight(LightDef def) {
+        int rays = Math.max(MIN_RAYS, (int) (def.rays * rayScale));
+        PointLight light = new PointLight(rayHandler, rays, def.color, def.distance, def.x, def.y);
+        light.setSoftnessLength(SOFTNESS_LENGTH);
+        return light;
+    }
+
+    /**
+     * Adds a light that isn't in the map. It is kept across {@link #applySettings} like the map lights.
+     */
+    public void addLight(LightDef def) {
+        lightDefs.add(def);
+        lights.add(createLight(def));
+    }
+
+    /**
+     * Removes a light added with {@link #addLight} and frees its meshes.
+     */
+    public void removeLight(LightDef def) {
+        int index = lightDefs.indexOf(def, true);
+        if (index < 0) {
+            return;
+        }
+        lightDefs.removeIndex(index);
+        lights.removeIndex(index).remove();
+    }
+
+    /**
+     * Rebuilds the lightmap if the new screen size changes its resolution.
+     */
+    public void resize(int width, int height) {
+        if (settings.getLightmapWidth(width) != lightmapWidth || settings.getLightmapHeight(height) != lightmapHeight) {
+            applySettings(settings);
+        }
+    }
+
+    public LightSettings getSettings() {
+        return settings;
     }
 
     public void updateAndRender() {
         rayHandler.updateAndRender();
     }
 
+    @Override
     public void dispose() {
         rayHandler.dispose();
     }
@@ -84,14 +217,37 @@ public class TiledLightManager {
     }
 
     public void setCulling(boolean culling) {
+        this.culling = culling;
         rayHandler.setCulling(culling);
     }
 
     public void setShadows(boolean shadows) {
+        this.shadows = shadows;
         rayHandler.setShadows(shadows);
     }
 
     public void setAmbientLight(Color ambientLightColor) {
+        ambientLight.set(ambientLightColor);
         rayHandler.setAmbientLight(ambientLightColor);
     }
+
+    public static class LightDef {
+        final int rays;
+        final Color color;
+        final float distance;
+        final float x;
+        final float y;
+
+        public LightDef(int rays, Color color, float distance, float x, float y) {
+            this.rays = rays;
+            this.color = color;
+            this.distance = distance;
+            this.x = x;
+            this.y = y;
+        }
+
+        public int getRays() {
+            return rays;
+        }
+    }
 }
@@ -26,5 +26,5 @@ package com.nickschatz.ninjaball.util;
 public abstract class UserData {
     public static final Integer MAP_PART = 0;
     public static final Integer PLAYER_SENSOR = 1;
-    public static final Integer EXIT = 2;
+    public static final Integer ENTITY = 3;
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball;
+
+import com.badlogic.gdx.backends.gwt.preloader.DefaultAssetFilter;
+
+/**
+ * Decides what the browser downloads before the game starts. Runs in the GWT compiler, it is not
+ * part of the client code.
+ *
+ * <p>Music is left out and copied next to the preloaded assets by the build, the backend streams it
+ * from its URL when a level starts. Tileset images and maps that only feed packTextures are never
+ * read at runtime and aren't deployed at all.
+ */
+public class PreloadAssetFilter extends DefaultAssetFilter {
+
+    private static final String[] STREAMED = {"data/music/"};
+    private static final String[] BUILD_ONLY = {"data/castle.png", "data/bgchip.png", "data/stage1.tmx"};
+
+    @Override
+    public boolean accept(String file, boolean isDirectory) {
+        String path = file.replace('\\', '/');
+        for (String prefix : STREAMED) {
+            if (path.contains(prefix) && !isDirectory) return false;
+        }
+        for (String name : BUILD_ONLY) {
+            if (path.endsWith(name)) return false;
+        }
+        return super.accept(file, isDirectory);
+    }
+}
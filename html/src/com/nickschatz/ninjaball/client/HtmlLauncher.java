@@ -37,6 +37,43 @@ public class HtmlLauncher extends GwtApplication {
 
         @Override
         public ApplicationListener getApplicationListener () {
-                return new NinjaBallGame();
+                return new NinjaBallGame() {
+                        @Override
+                        public void create () {
+                                //Covers the script download and the preloader, LoadTimings counts from here
+                                consoleLog("HtmlLauncher: create " + (long) pageTime() + "ms after navigation start");
+                                super.create();
+                        }
+                };
         }
+
+        /**
+         * Logs to the browser console instead of a text area on the page.
+         */
+        @Override
+        public void log (String tag, String message) {
+                if (getLogLevel() >= LOG_INFO) consoleLog(tag + ": " + message);
+        }
+
+        @Override
+        public void error (String tag, String message) {
+                if (getLogLevel() >= LOG_ERROR) consoleError(tag + ": " + message);
+        }
+
+        @Override
+        public void debug (String tag, String message) {
+                if (getLogLevel() >= LOG_DEBUG) consoleLog(tag + ": " + message);
+        }
+
+        private static native double pageTime () /*-{
+                return $wnd.performance && $wnd.performance.now ? $wnd.performance.now() : 0;
+        }-*/;
+
+        private static native void consoleLog (String message) /*-{
+                if ($wnd.console) $wnd.console.log(message);
+        }-*/;
+
+        private static native void consoleError (String message) /*-{
+                if ($wnd.console) $wnd.console.error(message);
+        }-*/;
 }
\ No newline at end of file
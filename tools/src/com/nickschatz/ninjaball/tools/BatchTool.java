@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.tools;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.nickschatz.ninjaball.Levels;
+import com.nickschatz.ninjaball.physics.GameWorld;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Plays many runs of each level in parallel and writes one CSV line of metrics per run.
+ *
+ * <p>Run from android/assets:
+ * {@code BatchTool [-runs n] [-seconds s] [-threads t] [-input recording.txt] [-expect-exit]
+ * [-trace expected.trace] [-tolerance px] [-write-trace out.trace] [-csv out.csv] [level.tmx...]}.
+ * Every run uses a seeded {@link InputScript} unless a recording is given, see {@link RecordedInput}.
+ * With -expect-exit the tool exits with 1 if a run misses the exit, which turns a recording written by
+ * {@link SolveTool} into a check that the level can still be finished, see tools/regression.
+ * With -trace it exits with 1 if the player's path leaves the expected {@link Trace} by more than
+ * the tolerance, by default {@link #TRACE_TOLERANCE} map pixels. -write-trace saves the path of the first run.
+ */
+public class BatchTool extends ApplicationAdapter {
+
+    /** A quarter metre. Replays of the same input drift apart slowly, about 13 pixels over 80s on level1. */
+    public static final float TRACE_TOLERANCE = 16;
+
+    private int runsPerLevel = 100;
+    private float seconds = 60;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private String inputPath;
+    private String csvPath;
+    private boolean expectExit;
+    private String tracePath;
+    private String writeTracePath;
+    private float tolerance = TRACE_TOLERANCE;
+    private final Array<String> mapPaths = new Array<String>();
+
+    public static void main(String[] args) {
+        BatchTool tool = new BatchTool();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-runs")) tool.runsPerLevel = Integer.parseInt(args[++i]);
+            else if (arg.equals("-seconds")) tool.seconds = Float.parseFloat(args[++i]);
+            else if (arg.equals("-threads")) tool.threads = Integer.parseInt(args[++i]);
+            else if (arg.equals("-input")) tool.inputPath = args[++i];
+            else if (arg.equals("-csv")) tool.csvPath = args[++i];
+            else if (arg.equals("-expect-exit")) tool.expectExit = true;
+            else if (arg.equals("-trace")) tool.tracePath = args[++i];
+            else if (arg.equals("-write-trace")) tool.writeTracePath = args[++i];
+            else if (arg.equals("-tolerance")) tool.tolerance = Float.parseFloat(args[++i]);
+            else tool.mapPaths.add(arg);
+        }
+        if (tool.mapPaths.size == 0) {
+            for (int i = 0; i < Levels.ALL.length; i++) {
+                tool.mapPaths.add(Levels.ALL[i].getMapPath());
+            }
+        }
+        new HeadlessApplication(tool);
+    }
+
+    @Override
+    public void create() {
+        int steps = Math.round(seconds / GameWorld.STEP_TIME);
+        List<Playthrough> runs = new ArrayList<Playthrough>();
+        for (String mapPath : mapPaths) {
+            for (int i = 0; i < runsPerLevel; i++) {
+                InputSource input = inputPath == null ? new InputScript(i) : new RecordedInput(Gdx.files.absolute(inputPath));
+                Playthrough run = new Playthrough(mapPath, input, i, steps);
+                runs.add(tracePath != null || writeTracePath != null ? run.traced() : run);
+            }
+        }
+
+        BatchRunner runner = new BatchRunner(threads);
+        long start = System.nanoTime();
+        List<RunResult> results = runner.run(runs);
+        long wallNanos = System.nanoTime() - start;
+        runner.shutdown();
+
+        PrintStream csv = System.out;
+        if (csvPath != null) {
+            FileHandle file = Gdx.files.absolute(csvPath);
+            csv = new PrintStream(file.write(false));
+        }
+        csv.println(RunResult.csvHeader());
+        for (RunResult result : results) {
+            csv.println(result.toCsv());
+        }
+        if (csv != System.out) {
+            csv.close();
+        }
+
+        for (String mapPath : mapPaths) {
+            printSummary(mapPath, results);
+        }
+        float minutes = wallNanos / 60e9f;
+        System.err.println(results.size() + " runs on " + runner.getParallelism() + " threads in "
+                + wallNanos / 1000000 + "ms, " + (int) (results.size() / minutes) + " runs per minute");
+
+        if (writeTracePath != null) {
+            results.get(0).getTrace().write(Gdx.files.absolute(writeTracePath), results.get(0).getMapPath()
+                    + (inputPath != null ? " with " + inputPath : " with script " + results.get(0).getSeed()));
+        }
+
+        int missed = 0;
+        if (tracePath != null) {
+            Trace expected = new Trace(Gdx.files.absolute(tracePath));
+            for (RunResult result : results) {
+                Trace trace = result.getTrace();
+                int divergence = trace.findDivergence(expected, tolerance);
+                if (divergence >= 0) {
+                    System.err.println("LEFT THE TRACE: " + result.getMapPath() + " run " + result.getSeed() + " was at "
+                            + trace.describe(divergence) + ", expected " + expected.describe(divergence));
+                    missed++;
+                }
+            }
+        }
+        if (expectExit) {
+            for (RunResult result : results) {
+                if (!result.isExitReached()) {
+                    System.err.println("MISSED THE EXIT: " + result.getMapPath() + " run " + result.getSeed()
+                            + " ended at " + result.getFinalX() + ", " + result.getFinalY());
+                    missed++;
+                }
+            }
+        }
+        System.exit(missed > 0 ? 1 : 0);
+    }
+
+    private void printSummary(String mapPath, List<RunResult> results) {
+        int count = 0;
+        int exits = 0;
+        int hits = 0;
+        int[] exitSteps = new int[results.size()];
+        for (RunResult result : results) {
+            if (!result.getMapPath().equals(mapPath)) continue;
+            count++;
+            if (result.isExitReached()) exitSteps[exits++] = result.getExitStep();
+            if (result.getHitStep() >= 0) hits++;
+        }
+        Arrays.sort(exitSteps, 0, exits);
+        System.err.println(mapPath + ": " + exits + "/" + count + " reached the exit, " + hits + " hit"
+                + (exits > 0 ? ", median exit at " + exitSteps[exits / 2] * GameWorld.STEP_TIME + "s" : ""));
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.tools;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.nickschatz.ninjaball.physics.GameWorld;
+
+import java.util.Random;
+
+/**
+ * Deterministic input for headless runs: the level is swung back and forth while the player
+ * jumps and throws or releases the rope at fixed intervals. The same seed always gives the same run.
+ */
+public class InputScript implements InputSource {
+
+    private final float swingPeriod;
+    private final float swingAmount;
+    private final int jumpInterval;
+    private final int ropeInterval;
+    private final int ropeOffset;
+
+    public InputScript(long seed) {
+        Random random = new Random(seed);
+        swingPeriod = 90 + random.nextInt(270);
+        swingAmount = (0.25f + 0.75f * random.nextFloat()) * GameWorld.ROT_LIMIT;
+        jumpInterval = 20 + random.nextInt(70);
+        ropeInterval = 30 + random.nextInt(90);
+        ropeOffset = random.nextInt(ropeInterval);
+    }
+
+    @Override
+    public void apply(GameWorld world, int step) {
+        world.setRotation(swingAmount * MathUtils.sin(step * MathUtils.PI2 / swingPeriod));
+        if (step % jumpInterval == 0) {
+            world.jump();
+        }
+        if (step % ropeInterval == ropeOffset) {
+            world.rope();
+        }
+    }
+}
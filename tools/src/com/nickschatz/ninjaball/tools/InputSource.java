@@ -21,17 +21,16 @@
  *    distribution.
  */
 
-package com.nickschatz.ninjaball.entity;
+package com.nickschatz.ninjaball.tools;
 
-public class Sign {
-    private String text;
-
-    public Sign(String text) {
-        this.text = text;
-    }
-
-    public String getText() {
-        return text;
-    }
+import com.nickschatz.ninjaball.physics.GameWorld;
 
+/**
+ * Drives the player in a headless run.
+ */
+public interface InputSource {
+    /**
+     * Applies the input for the given step, called before {@link GameWorld#step(float)}.
+     */
+    void apply(GameWorld world, int step);
 }
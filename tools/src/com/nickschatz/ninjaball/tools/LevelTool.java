@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.tools;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Logger;
+import com.nickschatz.ninjaball.Levels;
+import com.nickschatz.ninjaball.physics.GameWorld;
+import com.nickschatz.ninjaball.util.TiledLightManager;
+
+import java.util.Arrays;
+
+/**
+ * Checks levels without a window: loads each map, builds its physics, lights, triggers and entities,
+ * reports what was created and everything that went wrong, then plays a scripted run and reports
+ * how long the steps took.
+ *
+ * <p>Run from android/assets: {@code LevelTool [seconds] [level.tmx...]}. Without levels every level
+ * of the game is checked. Exits with 1 if any level had warnings.
+ */
+public class LevelTool extends ApplicationAdapter {
+
+    public static final String MATERIALS = "data/materials.json";
+    public static final String LIGHTS_LAYER = "lights";
+    private static final float DEFAULT_SECONDS = 30;
+    private static final long SCRIPT_SEED = 1;
+
+    private final float seconds;
+    private final String[] mapPaths;
+
+    public LevelTool(float seconds, String[] mapPaths) {
+        this.seconds = seconds;
+        this.mapPaths = mapPaths;
+    }
+
+    public static void main(String[] args) {
+        float seconds = DEFAULT_SECONDS;
+        int first = 0;
+        if (args.length > 0 && !args[0].endsWith(".tmx")) {
+            seconds = Float.parseFloat(args[0]);
+            first = 1;
+        }
+        String[] mapPaths = Arrays.copyOfRange(args, first, args.length);
+        if (mapPaths.length == 0) {
+            mapPaths = new String[Levels.ALL.length];
+            for (int i = 0; i < Levels.ALL.length; i++) {
+                mapPaths[i] = Levels.ALL[i].getMapPath();
+            }
+        }
+        new HeadlessApplication(new LevelTool(seconds, mapPaths));
+    }
+
+    @Override
+    public void create() {
+        ObjectLayerTmxLoader loader = new ObjectLayerTmxLoader();
+        int failed = 0;
+        for (String mapPath : mapPaths) {
+            if (!checkLevel(loader, mapPath)) {
+                failed++;
+            }
+        }
+        System.out.println(mapPaths.length + " levels checked, " + failed + " with warnings");
+        System.exit(failed > 0 ? 1 : 0);
+    }
+
+    /**
+     * @return true if the level loaded without warnings.
+     */
+    private boolean checkLevel(ObjectLayerTmxLoader loader, String mapPath) {
+        System.out.println(mapPath);
+        TiledMap map = loader.loadObjectLayers(Gdx.files.internal(mapPath));
+        Array<String> warnings = new Array<String>();
+
+        Array<TiledLightManager.LightDef> lights = TiledLightManager.parseLights(map, LIGHTS_LAYER, warnings);
+        int rays = 0;
+        for (TiledLightManager.LightDef light : lights) {
+            rays += light.getRays();
+        }
+
+        GameWorld gameWorld = new GameWorld(map, Gdx.files.internal(MATERIALS), null, Logger.NONE);
+        warnings.addAll(gameWorld.getMapBodyManager().getWarnings());
+
+        World world = gameWorld.getWorld();
+        Array<Body> bodies = new Array<Body>();
+        world.getBodies(bodies);
+        int fixtures = 0;
+        for (Body body : bodies) {
+            fixtures += body.getFixtureList().size;
+        }
+        System.out.println("  bodies " + world.getBodyCount() + ", fixtures " + fixtures + ", joints " + world.getJointCount());
+        System.out.println("  lights " + lights.size + " (" + rays + " rays), triggers " + gameWorld.getTriggers().getTriggerCount()
+                + ", entities " + gameWorld.getEntities().getCount());
+
+        int steps = Math.round(seconds / GameWorld.STEP_TIME);
+        if (steps > 0) {
+            RunResult result = Playthrough.simulate(gameWorld, new InputScript(SCRIPT_SEED), steps, new RunResult(mapPath, SCRIPT_SEED));
+            System.out.println("  " + result.getSteps() + " steps, step time p50 " + result.getStepMicros(0.5f) + "us, p95 " + result.getStepMicros(0.95f)
+                    + "us, p99 " + result.getStepMicros(0.99f) + "us, max " + result.getStepMicros(1) + "us"
+                    + (result.isExitReached() ? ", exit reached at step " + result.getExitStep() : ""));
+            System.out.println("  " + gameWorld.getStats().describe().replace("\n", "\n  "));
+        }
+        gameWorld.dispose();
+
+        for (String warning : warnings) {
+            System.out.println("  WARNING " + warning);
+        }
+        return warnings.size == 0;
+    }
+}
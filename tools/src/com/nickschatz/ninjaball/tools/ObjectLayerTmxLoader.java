@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.tools;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TmxMapLoader;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.XmlReader.Element;
+
+import java.io.IOException;
+
+/**
+ * Loads only the properties and object layers of a .tmx map. The tilesets are skipped, so no
+ * textures are created and it works without a GL context.
+ */
+public class ObjectLayerTmxLoader extends TmxMapLoader {
+
+    public TiledMap loadObjectLayers(FileHandle tmxFile) {
+        try {
+            root = xml.parse(tmxFile);
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Couldn't load tilemap '" + tmxFile.path() + "'", e);
+        }
+
+        mapTileWidth = root.getIntAttribute("tilewidth", 0);
+        mapTileHeight = root.getIntAttribute("tileheight", 0);
+        mapWidthInPixels = root.getIntAttribute("width", 0) * mapTileWidth;
+        mapHeightInPixels = root.getIntAttribute("height", 0) * mapTileHeight;
+        convertObjectToTileSpace = false;
+
+        TiledMap map = new TiledMap();
+        Element properties = root.getChildByName("properties");
+        if (properties != null) {
+            loadProperties(map.getProperties(), properties);
+        }
+        for (Element group : root.getChildrenByName("objectgroup")) {
+            loadObjectGroup(map, group);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.tools;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Logger;
+import com.nickschatz.ninjaball.perf.WorldStats;
+import com.nickschatz.ninjaball.physics.GameWorld;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+/**
+ * One headless run of a level. Every run loads its own map and builds its own {@link GameWorld},
+ * so runs share nothing and can go on separate threads. Even reading a shared map isn't safe,
+ * libGDX arrays hand out the same iterator to every caller.
+ */
+public class Playthrough implements Callable<RunResult> {
+
+    private final String mapPath;
+    private final InputSource input;
+    private final long seed;
+    private final int steps;
+    private boolean traced;
+
+    /**
+     * @param seed identifies the run in the results, the seed of the input script if there is one.
+     */
+    public Playthrough(String mapPath, InputSource input, long seed, int steps) {
+        this.mapPath = mapPath;
+        this.input = input;
+        this.seed = seed;
+        this.steps = steps;
+    }
+
+    /**
+     * Records the player's path into the result, see {@link RunResult#getTrace()}.
+     */
+    public Playthrough traced() {
+        traced = true;
+        return this;
+    }
+
+    @Override
+    public RunResult call() {
+        long start = System.nanoTime();
+        TiledMap map = new ObjectLayerTmxLoader().loadObjectLayers(Gdx.files.internal(mapPath));
+        GameWorld world = new GameWorld(map, Gdx.files.internal(LevelTool.MATERIALS), null, Logger.NONE);
+        RunResult result = new RunResult(mapPath, seed);
+        if (traced) {
+            result.trace = new Trace();
+        }
+        try {
+            simulate(world, input, steps, result);
+        } finally {
+            world.dispose();
+        }
+        result.wallNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Steps the world until the exit is reached, the player is hit or the steps run out.
+     * Samples the player's path if the result has a {@link Trace}.
+     */
+    public static RunResult simulate(GameWorld world, InputSource input, int steps, RunResult result) {
+        long[] stepNanos = new long[steps];
+        int step = 0;
+        while (step < steps) {
+            input.apply(world, step);
+            long start = System.nanoTime();
+            world.step(GameWorld.STEP_TIME);
+            stepNanos[step] = System.nanoTime() - start;
+            step++;
+            if (result.trace != null && step % Trace.INTERVAL == 0) {
+                result.trace.sample(step, world.getPlayer().getPosition());
+            }
+            if (world.isExitReached()) {
+                result.exitStep = step;
+                break;
+            }
+            if (world.isPlayerHit()) {
+                result.hitStep = step;
+                break;
+            }
+        }
+        result.steps = step;
+        result.stepNanos = step == steps ? stepNanos : Arrays.copyOf(stepNanos, step);
+        result.sortStepTimes();
+        result.pickups = world.getPickups();
+        for (int i = 0; i < WorldStats.COUNT; i++) {
+            result.slowestStats[i] = world.getStats().getAtSlowest(i);
+        }
+        Vector2 position = world.getPlayer().getPosition();
+        result.finalX = position.x;
+        result.finalY = position.y;
+        return result;
+    }
+}
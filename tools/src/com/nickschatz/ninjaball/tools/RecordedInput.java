@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.tools;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.nickschatz.ninjaball.physics.GameWorld;
+
+/**
+ * Input read from a text file, one line per step that changes something:
+ * {@code <step> <rotation> [jump] [rope]}. The rotation holds until the next line,
+ * lines starting with # are ignored.
+ */
+public class RecordedInput implements InputSource {
+
+    private static final int JUMP = 1;
+    private static final int ROPE = 2;
+
+    private final IntArray steps = new IntArray();
+    private final FloatArray rotations = new FloatArray();
+    private final IntArray actions = new IntArray();
+    private int next = 0;
+
+    public RecordedInput(FileHandle file) {
+        this(file.readString(), file.path());
+    }
+
+    /**
+     * @param source names the input in error messages.
+     */
+    public RecordedInput(String text, String source) {
+        String[] lines = text.split("\n");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.length() == 0 || line.startsWith("#")) continue;
+
+            String[] parts = line.split("\\s+");
+            try {
+                int step = Integer.parseInt(parts[0]);
+                if (steps.size > 0 && step <= steps.peek()) {
+                    throw new GdxRuntimeException(source + ":" + (i + 1) + " steps must increase");
+                }
+                steps.add(step);
+                rotations.add(Float.parseFloat(parts[1]));
+            } catch (NumberFormatException e) {
+                throw new GdxRuntimeException(source + ":" + (i + 1) + " " + e.getMessage());
+            } catch (ArrayIndexOutOfBoundsException e) {
+                throw new GdxRuntimeException(source + ":" + (i + 1) + " expected <step> <rotation>");
+            }
+            int action = 0;
+            for (int j = 2; j < parts.length; j++) {
+                if (parts[j].equals("jump")) action |= JUMP;
+                else if (parts[j].equals("rope")) action |= ROPE;
+                else throw new GdxRuntimeException(source + ":" + (i + 1) + " unknown action " + parts[j]);
+            }
+            actions.add(action);
+        }
+    }
+
+    @Override
+    public void apply(GameWorld world, int step) {
+        if (step == 0) {
+            next = 0;
+        }
+        if (next < steps.size && steps.get(next) == step) {
+            world.setRotation(rotations.get(next));
+            if ((actions.get(next) & JUMP) != 0) {
+                world.jump();
+            }
+            if ((actions.get(next) & ROPE) != 0) {
+                world.rope();
+            }
+            next++;
+        }
+    }
+
+    /**
+     * @return the step of the last line, the length of the recording.
+     */
+    public int getLastStep() {
+        return steps.size == 0 ? 0 : steps.peek();
+    }
+}
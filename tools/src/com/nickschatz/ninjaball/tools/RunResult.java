@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.tools;
+
+import com.nickschatz.ninjaball.perf.WorldStats;
+
+import java.util.Arrays;
+
+/**
+ * Metrics of one headless run.
+ */
+public class RunResult {
+
+    final String mapPath;
+    final long seed;
+    int steps;
+    int exitStep = -1;
+    int pickups;
+    int hitStep = -1;
+    float finalX;
+    float finalY;
+    long wallNanos;
+    long[] stepNanos;
+    final int[] slowestStats = new int[WorldStats.COUNT];
+    /** Only recorded when set before the run. */
+    Trace trace;
+
+    public RunResult(String mapPath, long seed) {
+        this.mapPath = mapPath;
+        this.seed = seed;
+    }
+
+    /**
+     * @param percentile between 0 and 1.
+     */
+    public long getStepMicros(float percentile) {
+        if (stepNanos == null || stepNanos.length == 0) return 0;
+        return stepNanos[(int) ((stepNanos.length - 1) * percentile)] / 1000;
+    }
+
+    void sortStepTimes() {
+        Arrays.sort(stepNanos);
+    }
+
+    public String getMapPath() {
+        return mapPath;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return the step the exit was reached at, or -1.
+     */
+    public int getExitStep() {
+        return exitStep;
+    }
+
+    public boolean isExitReached() {
+        return exitStep >= 0;
+    }
+
+    public int getPickups() {
+        return pickups;
+    }
+
+    /**
+     * @return the step the player was hit at, which ends the run, or -1.
+     */
+    public int getHitStep() {
+        return hitStep;
+    }
+
+    public float getFinalX() {
+        return finalX;
+    }
+
+    public float getFinalY() {
+        return finalY;
+    }
+
+    /**
+     * @return the player's path, or null if the run wasn't traced.
+     */
+    public Trace getTrace() {
+        return trace;
+    }
+
+    /**
+     * @param stat one of the {@link WorldStats} constants.
+     * @return the stat at the slowest step of the run.
+     */
+    public int getStatAtSlowest(int stat) {
+        return slowestStats[stat];
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public static String csvHeader() {
+        StringBuilder header = new StringBuilder("map,seed,steps,exit_step,pickups,hit_step,final_x,final_y,"
+                + "step_p50_us,step_p99_us,step_max_us,wall_ms");
+        for (String name : WorldStats.NAMES) {
+            header.append(",slowest_").append(name);
+        }
+        return header.toString();
+    }
+
+    public String toCsv() {
+        StringBuilder line = new StringBuilder();
+        line.append(mapPath).append(',').append(seed).append(',').append(steps).append(',').append(exitStep)
+                .append(',').append(pickups).append(',').append(hitStep).append(',').append(finalX)
+                .append(',').append(finalY).append(',').append(getStepMicros(0.5f)).append(',')
+                .append(getStepMicros(0.99f)).append(',').append(getStepMicros(1)).append(',')
+                .append(wallNanos / 1000000);
+        for (int stat : slowestStats) {
+            line.append(',').append(stat);
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,572 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.tools;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.Logger;
+import com.nickschatz.ninjaball.physics.GameWorld;
+import com.nickschatz.ninjaball.physics.StaticField;
+import com.nickschatz.ninjaball.physics.WorldSnapshot;
+import com.nickschatz.ninjaball.trigger.Trigger;
+import com.nickschatz.ninjaball.trigger.TriggerGrid;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Looks for an input sequence that gets the player from the spawn to the exit of a level.
+ *
+ * <p>Beam search over actions that are held for a short or a long time: a rotation, plus an optional
+ * jump or rope throw/release at the start, or a swing that throws the rope at the start and lets go at
+ * the end. The long hold lets a slow drift, like tilting the ball into a side opening while it slides
+ * down a wall, finish in one action. Every generation each kept state is restored with a
+ * {@link WorldSnapshot} and every action is rolled out from it in parallel, each pool thread stepping
+ * its own {@link GameWorld}. States are ranked by their distance to the exit through free space,
+ * and at most {@link #PER_CELL} are kept per area so the beam doesn't collapse into one corner.
+ * Areas the beam keeps coming back to rank lower every time, so it eventually leaves a dead end.
+ *
+ * <p>Snapshots include the entities, so hazards and pickups are where they were when the parent state
+ * was captured. A restore still isn't what playing the same input from the spawn gives: Box2D keeps its
+ * contacts and their impulses from whatever the thread world did last, and respawned entities come back
+ * in a different body order. So the search only plans with restores. The plan is then played on one
+ * world that is never restored, and once that world ends up more than {@link #PLAN_TOLERANCE} away from
+ * the plan the search plans again from where it really is. The sequence that comes out is exactly what
+ * a replay from the spawn does.
+ */
+public class SolvabilitySearch {
+
+    public static final float[] ROTATIONS = {-GameWorld.ROT_LIMIT, -GameWorld.ROT_LIMIT * 3 / 4,
+            -GameWorld.ROT_LIMIT / 2, -GameWorld.ROT_LIMIT / 4, 0, GameWorld.ROT_LIMIT / 4,
+            GameWorld.ROT_LIMIT / 2, GameWorld.ROT_LIMIT * 3 / 4, GameWorld.ROT_LIMIT};
+    public static final int PRESS_NONE = 0;
+    public static final int PRESS_JUMP = 1;
+    public static final int PRESS_ROPE = 2;
+    /** Rope at the first step and again at the last, a throw that is let go of when the action ends. */
+    public static final int PRESS_SWING = 3;
+    private static final int PRESS_COUNT = 4;
+    /** Holds as multiples of the hold steps. */
+    private static final int[] HOLDS = {1, 3};
+    private static final int ACTION_COUNT = ROTATIONS.length * PRESS_COUNT * HOLDS.length;
+
+    /** Resolution of the distance-to-exit grid, in metres. */
+    private static final float GRID_SIZE = 0.5f;
+    /** Resolution of the visited areas, in metres. */
+    public static final float AREA_SIZE = 2;
+    private static final int PER_CELL = 2;
+    /** Added to the score of a state for every earlier state kept in its area. */
+    private static final float REVISIT_COST = AREA_SIZE / 4;
+    private static final float UNREACHABLE = 1e6f;
+    /** How far, in metres, playing an action from the spawn may end up from the plan before planning again. */
+    private static final float PLAN_TOLERANCE = 0.125f;
+    private static final int MAX_PLANS = 500;
+
+    private final String mapPath;
+    private final BatchRunner runner;
+    private final int beamWidth;
+    private final int holdSteps;
+    private final Array<GameWorld> worlds = new Array<GameWorld>();
+    private final ThreadLocal<GameWorld> threadWorld = new ThreadLocal<GameWorld>() {
+        @Override
+        protected GameWorld initialValue() {
+            return createWorld();
+        }
+    };
+
+    private GameWorld world;
+    private StaticField field;
+    private final Rectangle exit = new Rectangle();
+    private final Vector2 spawn = new Vector2();
+    private int gridWidth;
+    private int gridHeight;
+    private float[] exitDistance;
+    private int areaWidth;
+    private int areaHeight;
+    private boolean[] visited;
+    private int[] kept;
+    private int rollouts;
+    private int plans;
+
+    /**
+     * @param holdSteps physics steps a short action is held for, long ones are held three times as long.
+     */
+    public SolvabilitySearch(String mapPath, BatchRunner runner, int beamWidth, int holdSteps) {
+        this.mapPath = mapPath;
+        this.runner = runner;
+        this.beamWidth = beamWidth;
+        this.holdSteps = holdSteps;
+    }
+
+    /**
+     * @param maxSteps the longest sequence to try, in physics steps.
+     * @return the last node of the fastest sequence found, or null if there is none.
+     */
+    public Node search(int maxSteps) {
+        world = createWorld();
+        field = world.getStaticField();
+        spawn.set(world.getSpawn());
+        if (!findExit(world.getTriggers())) {
+            Gdx.app.error("SolvabilitySearch", mapPath + " has no exit");
+            return null;
+        }
+        //Half the radius, the field is only accurate to a cell and the player squeezes through corners
+        buildExitDistance(world.getPlayer().getRadius() / 2);
+        areaWidth = (int) Math.ceil(field.getWidth() * field.getCellSize() / AREA_SIZE);
+        areaHeight = (int) Math.ceil(field.getHeight() * field.getCellSize() / AREA_SIZE);
+        visited = new boolean[areaWidth * areaHeight];
+        kept = new int[visited.length];
+
+        Node root = new Node(null, -1);
+        root.snapshot.capture(world, null);
+        root.x = spawn.x;
+        root.y = spawn.y;
+        root.score = score(spawn.x, spawn.y);
+        markVisited(root);
+
+        for (int plan = 0; plan < MAX_PLANS; plan++) {
+            Node goal = plan(root, maxSteps);
+            if (goal == null) {
+                return null;
+            }
+            plans++;
+            Array<Node> path = new Array<Node>();
+            for (Node n = goal; n != root; n = n.parent) {
+                path.add(n);
+            }
+            path.reverse();
+
+            //Play the plan on the world that only ever runs forward from the spawn, for as long as it agrees
+            for (Node planned : path) {
+                Node node = new Node(root, planned.action);
+                play(world, node);
+                node.snapshot.capture(world, null);
+                markVisited(node);
+                if (node.exitStep >= 0) {
+                    return node;
+                }
+                if (node.hit) {
+                    rebuild(root);
+                    break;
+                }
+                root = node;
+                if (Vector2.dst(node.x, node.y, planned.x, planned.y) > PLAN_TOLERANCE) {
+                    break;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Beam search from root with snapshot restores, which are close to but not exactly what playing the
+     * same input from the spawn gives.
+     *
+     * @return a node that reached the exit, or null.
+     */
+    private Node plan(Node root, int maxSteps) {
+        for (int i = 0; i < kept.length; i++) {
+            kept[i] = 0;
+        }
+        List<Node> beam = new ArrayList<Node>();
+        beam.add(root);
+        while (beam.size() > 0) {
+            List<Callable<Node>> tasks = new ArrayList<Callable<Node>>(beam.size() * ACTION_COUNT);
+            for (Node node : beam) {
+                for (int action = 0; action < ACTION_COUNT; action++) {
+                    Node child = new Node(node, action);
+                    if (child.startStep + child.steps <= maxSteps) {
+                        tasks.add(new Rollout(child));
+                    }
+                }
+            }
+            if (tasks.isEmpty()) {
+                break;
+            }
+            List<Node> children = runner.run(tasks);
+            rollouts += children.size();
+
+            Node best = null;
+            for (Node child : children) {
+                markVisited(child);
+                if (child.exitStep >= 0 && (best == null || child.exitStep < best.exitStep)) {
+                    best = child;
+                }
+            }
+            if (best != null) {
+                return best;
+            }
+            beam = select(children);
+        }
+        return null;
+    }
+
+    private List<Node> select(List<Node> children) {
+        for (Node child : children) {
+            child.rank = child.score + REVISIT_COST * kept[area(child.x, child.y)];
+        }
+        Collections.sort(children, new Comparator<Node>() {
+            @Override
+            public int compare(Node a, Node b) {
+                return Float.compare(a.rank, b.rank);
+            }
+        });
+        List<Node> beam = new ArrayList<Node>(beamWidth);
+        IntIntMap perCell = new IntIntMap();
+        for (Node child : children) {
+            if (child.hit) continue;
+            int area = area(child.x, child.y);
+            int count = perCell.get(area, 0);
+            if (count >= PER_CELL) continue;
+            perCell.put(area, count + 1);
+            kept[area]++;
+            beam.add(child);
+            if (beam.size() == beamWidth) break;
+        }
+        return beam;
+    }
+
+    private class Rollout implements Callable<Node> {
+        private final Node node;
+
+        Rollout(Node node) {
+            this.node = node;
+        }
+
+        @Override
+        public Node call() {
+            GameWorld world = threadWorld.get();
+            node.parent.snapshot.restore(world, null);
+            play(world, node);
+            node.snapshot.capture(world, null);
+            return node;
+        }
+    }
+
+    /**
+     * Steps the world through the action of node and records where it ended up.
+     */
+    private void play(GameWorld world, Node node) {
+        int press = node.getPress();
+        for (int i = 0; i < node.steps; i++) {
+            world.setRotation(node.getRotation());
+            if (i == 0 && press == PRESS_JUMP) world.jump();
+            if (i == 0 && (press == PRESS_ROPE || press == PRESS_SWING)) world.rope();
+            if (i > 0 && i == node.steps - 1 && press == PRESS_SWING && world.getPlayer().hasRope()) {
+                world.rope();
+                node.letGo = true;
+            }
+            world.step(GameWorld.STEP_TIME);
+            if (world.isExitReached()) {
+                node.exitStep = node.startStep + i + 1;
+                break;
+            }
+            if (world.isPlayerHit()) {
+                node.hit = true;
+                break;
+            }
+        }
+        Vector2 position = world.getPlayer().getPosition();
+        node.x = position.x;
+        node.y = position.y;
+        node.score = score(node.x, node.y);
+    }
+
+    /**
+     * Replaces the world with a new one and plays the sequence up to node on it, to take back an action.
+     */
+    private void rebuild(Node node) {
+        synchronized (worlds) {
+            worlds.removeValue(world, true);
+        }
+        world.dispose();
+        world = createWorld();
+        Array<Node> path = new Array<Node>();
+        for (Node n = node; n.parent != null; n = n.parent) {
+            path.add(n);
+        }
+        path.reverse();
+        for (Node n : path) {
+            play(world, n);
+        }
+    }
+
+    /**
+     * One action of a sequence, with the state it left the world in.
+     */
+    public class Node {
+        private final Node parent;
+        private final int action;
+        private final int startStep;
+        private final int steps;
+        private final WorldSnapshot snapshot = new WorldSnapshot();
+        private float x;
+        private float y;
+        private float score;
+        private float rank;
+        private int exitStep = -1;
+        private boolean hit;
+        /** A swing that threw the rope and let go of it, as opposed to one that started by letting go. */
+        private boolean letGo;
+
+        Node(Node parent, int action) {
+            this.parent = parent;
+            this.action = action;
+            this.startStep = parent == null ? 0 : parent.startStep + parent.steps;
+            this.steps = action < 0 ? 0 : HOLDS[action % HOLDS.length] * holdSteps;
+        }
+
+        public Node getParent() {
+            return parent;
+        }
+
+        /**
+         * @return the step the action starts at, counted from the spawn.
+         */
+        public int getStartStep() {
+            return startStep;
+        }
+
+        /**
+         * @return how many steps the action is held for.
+         */
+        public int getSteps() {
+            return steps;
+        }
+
+        public float getRotation() {
+            return ROTATIONS[action / HOLDS.length / PRESS_COUNT];
+        }
+
+        /**
+         * @return one of the PRESS constants.
+         */
+        public int getPress() {
+            return action / HOLDS.length % PRESS_COUNT;
+        }
+
+        public int getExitStep() {
+            return exitStep;
+        }
+
+        public float getX() {
+            return x;
+        }
+
+        public float getY() {
+            return y;
+        }
+    }
+
+    /**
+     * @return the sequence ending at node in the format read by {@link RecordedInput}.
+     */
+    public static String toRecording(Node node) {
+        Array<Node> path = new Array<Node>();
+        for (Node n = node; n.parent != null; n = n.parent) {
+            path.add(n);
+        }
+        path.reverse();
+        StringBuilder text = new StringBuilder();
+        for (Node n : path) {
+            int press = n.getPress();
+            text.append(n.getStartStep()).append(' ').append(n.getRotation());
+            if (press == PRESS_JUMP) text.append(" jump");
+            if (press == PRESS_ROPE || press == PRESS_SWING) text.append(" rope");
+            text.append('\n');
+            if (n.letGo) {
+                text.append(n.getStartStep() + n.getSteps() - 1).append(' ').append(n.getRotation()).append(" rope\n");
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Draws the level with one character per {@link #AREA_SIZE} square, top row first:
+     * # geometry, . free space the exit can be reached from, + visited, * on the path, S spawn, E exit.
+     *
+     * @param path the found sequence, may be null.
+     */
+    public String visitedMap(Node path) {
+        char[] cells = new char[areaWidth * areaHeight];
+        for (int ay = 0; ay < areaHeight; ay++) {
+            for (int ax = 0; ax < areaWidth; ax++) {
+                float x = field.getOriginX() + (ax + 0.5f) * AREA_SIZE;
+                float y = field.getOriginY() + (ay + 0.5f) * AREA_SIZE;
+                int i = ay * areaWidth + ax;
+                if (field.distance(x, y) < AREA_SIZE / 4) cells[i] = '#';
+                else if (visited[i]) cells[i] = '+';
+                else if (distanceToExit(x, y) < Float.MAX_VALUE) cells[i] = '.';
+                else cells[i] = ' ';
+            }
+        }
+        for (Node n = path; n != null; n = n.parent) {
+            cells[area(n.x, n.y)] = '*';
+        }
+        cells[area(spawn.x, spawn.y)] = 'S';
+        cells[area(exit.x + exit.width / 2, exit.y + exit.height / 2)] = 'E';
+
+        StringBuilder text = new StringBuilder();
+        for (int ay = areaHeight - 1; ay >= 0; ay--) {
+            text.append(cells, ay * areaWidth, areaWidth).append('\n');
+        }
+        return text.toString();
+    }
+
+    public int getRollouts() {
+        return rollouts;
+    }
+
+    /**
+     * @return how many times the search planned, once at the start and again whenever the played sequence drifted off.
+     */
+    public int getPlans() {
+        return plans;
+    }
+
+    /**
+     * @return how many {@link #AREA_SIZE} squares the player has been in.
+     */
+    public int getVisitedAreas() {
+        int count = 0;
+        for (boolean v : visited) {
+            if (v) count++;
+        }
+        return count;
+    }
+
+    public void dispose() {
+        synchronized (worlds) {
+            for (GameWorld w : worlds) {
+                w.dispose();
+            }
+            worlds.clear();
+        }
+    }
+
+    private GameWorld createWorld() {
+        TiledMap map = new ObjectLayerTmxLoader().loadObjectLayers(Gdx.files.internal(mapPath));
+        GameWorld w = new GameWorld(map, Gdx.files.internal(LevelTool.MATERIALS), null, Logger.NONE);
+        synchronized (worlds) {
+            worlds.add(w);
+        }
+        return w;
+    }
+
+    private boolean findExit(TriggerGrid triggers) {
+        for (int i = 0; i < triggers.getTriggerCount(); i++) {
+            Trigger trigger = triggers.getTrigger(i);
+            if (trigger.getType() == Trigger.TYPE_EXIT) {
+                exit.set(trigger.getBounds());
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Breadth-first search out from the exit through the cells the player fits in.
+     */
+    private void buildExitDistance(float clearance) {
+        gridWidth = (int) Math.ceil(field.getWidth() * field.getCellSize() / GRID_SIZE);
+        gridHeight = (int) Math.ceil(field.getHeight() * field.getCellSize() / GRID_SIZE);
+        exitDistance = new float[gridWidth * gridHeight];
+        boolean[] free = new boolean[exitDistance.length];
+        IntArray queue = new IntArray();
+        for (int gy = 0; gy < gridHeight; gy++) {
+            for (int gx = 0; gx < gridWidth; gx++) {
+                int i = gy * gridWidth + gx;
+                float x = field.getOriginX() + (gx + 0.5f) * GRID_SIZE;
+                float y = field.getOriginY() + (gy + 0.5f) * GRID_SIZE;
+                free[i] = field.distance(x, y) >= clearance;
+                if (exit.contains(x, y)) {
+                    exitDistance[i] = 0;
+                    queue.add(i);
+                }
+                else {
+                    exitDistance[i] = Float.MAX_VALUE;
+                }
+            }
+        }
+        for (int head = 0; head < queue.size; head++) {
+            int i = queue.get(head);
+            int gx = i % gridWidth;
+            int gy = i / gridWidth;
+            float next = exitDistance[i] + GRID_SIZE;
+            if (gx > 0) visit(i - 1, next, free, queue);
+            if (gx < gridWidth - 1) visit(i + 1, next, free, queue);
+            if (gy > 0) visit(i - gridWidth, next, free, queue);
+            if (gy < gridHeight - 1) visit(i + gridWidth, next, free, queue);
+        }
+    }
+
+    private void visit(int i, float distance, boolean[] free, IntArray queue) {
+        if (free[i] && exitDistance[i] == Float.MAX_VALUE) {
+            exitDistance[i] = distance;
+            queue.add(i);
+        }
+    }
+
+    /**
+     * @return distance to the exit through free space, or Float.MAX_VALUE if it can't be reached from here.
+     */
+    private float distanceToExit(float x, float y) {
+        int gx = (int) Math.floor((x - field.getOriginX()) / GRID_SIZE);
+        int gy = (int) Math.floor((y - field.getOriginY()) / GRID_SIZE);
+        if (gx < 0 || gy < 0 || gx >= gridWidth || gy >= gridHeight) {
+            return Float.MAX_VALUE;
+        }
+        return exitDistance[gy * gridWidth + gx];
+    }
+
+    /**
+     * @return lower is closer to the exit, positions the exit can't be reached from rank behind all others.
+     */
+    private float score(float x, float y) {
+        float distance = distanceToExit(x, y);
+        if (distance < Float.MAX_VALUE) {
+            return distance;
+        }
+        return UNREACHABLE + Vector2.dst(x, y, exit.x + exit.width / 2, exit.y + exit.height / 2);
+    }
+
+    private int area(float x, float y) {
+        int ax = (int) Math.floor((x - field.getOriginX()) / AREA_SIZE);
+        int ay = (int) Math.floor((y - field.getOriginY()) / AREA_SIZE);
+        ax = Math.max(0, Math.min(areaWidth - 1, ax));
+        ay = Math.max(0, Math.min(areaHeight - 1, ay));
+        return ay * areaWidth + ax;
+    }
+
+    private void markVisited(Node node) {
+        visited[area(node.x, node.y)] = true;
+    }
+}
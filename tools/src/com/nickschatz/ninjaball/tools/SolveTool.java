@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.tools;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.utils.Array;
+import com.nickschatz.ninjaball.Levels;
+import com.nickschatz.ninjaball.physics.GameWorld;
+
+/**
+ * Checks that the exit of each level can be reached from its spawn, see {@link SolvabilitySearch}.
+ * Prints the input sequence found and a map of the visited areas, then replays the sequence from
+ * the spawn without snapshots to confirm it. A sequence that misses the exit on replay counts as
+ * not solved.
+ *
+ * <p>Run from android/assets:
+ * {@code SolveTool [-beam n] [-hold steps] [-seconds s] [-threads t] [-out dir] [level.tmx...]}.
+ * With -out the sequences are written as level.tmx.solution, readable by BatchTool -input -expect-exit.
+ * Only confirmed sequences are written. Exits with 1 if a level could not be solved.
+ */
+public class SolveTool extends ApplicationAdapter {
+
+    private int beamWidth = 64;
+    private int holdSteps = 10;
+    private float seconds = 150;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private String outDir;
+    private final Array<String> mapPaths = new Array<String>();
+
+    public static void main(String[] args) {
+        SolveTool tool = new SolveTool();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-beam")) tool.beamWidth = Integer.parseInt(args[++i]);
+            else if (arg.equals("-hold")) tool.holdSteps = Integer.parseInt(args[++i]);
+            else if (arg.equals("-seconds")) tool.seconds = Float.parseFloat(args[++i]);
+            else if (arg.equals("-threads")) tool.threads = Integer.parseInt(args[++i]);
+            else if (arg.equals("-out")) tool.outDir = args[++i];
+            else tool.mapPaths.add(arg);
+        }
+        if (tool.mapPaths.size == 0) {
+            for (int i = 0; i < Levels.ALL.length; i++) {
+                tool.mapPaths.add(Levels.ALL[i].getMapPath());
+            }
+        }
+        new HeadlessApplication(tool);
+    }
+
+    @Override
+    public void create() {
+        BatchRunner runner = new BatchRunner(threads);
+        int maxSteps = Math.round(seconds / GameWorld.STEP_TIME);
+        int unsolved = 0;
+        for (String mapPath : mapPaths) {
+            if (!solve(runner, mapPath, maxSteps)) {
+                unsolved++;
+            }
+        }
+        runner.shutdown();
+        System.out.println(mapPaths.size + " levels searched, " + unsolved + " not solved");
+        System.exit(unsolved > 0 ? 1 : 0);
+    }
+
+    private boolean solve(BatchRunner runner, String mapPath, int maxSteps) {
+        System.out.println(mapPath);
+        long start = System.nanoTime();
+        SolvabilitySearch search = new SolvabilitySearch(mapPath, runner, beamWidth, holdSteps);
+        SolvabilitySearch.Node solution = search.search(maxSteps);
+        long millis = (System.nanoTime() - start) / 1000000;
+        System.out.println("  " + search.getRollouts() + " rollouts and " + search.getPlans() + " plans in "
+                + millis + "ms, " + search.getVisitedAreas() + " areas visited");
+        System.out.print(search.visitedMap(solution));
+        search.dispose();
+
+        if (solution == null) {
+            System.out.println("  NOT SOLVED within " + seconds + "s");
+            return false;
+        }
+        String recording = SolvabilitySearch.toRecording(solution);
+        System.out.println("  search reached the exit in " + solution.getExitStep() + " steps ("
+                + solution.getExitStep() * GameWorld.STEP_TIME + "s):");
+        System.out.print(recording);
+
+        RunResult replay = new Playthrough(mapPath, new RecordedInput(recording, mapPath), 0,
+                solution.getExitStep() + holdSteps).call();
+        if (!replay.isExitReached()) {
+            System.out.println("  NOT SOLVED: replay from spawn misses the exit");
+            return false;
+        }
+        System.out.println("  replay from spawn reaches the exit at step " + replay.getExitStep());
+
+        if (outDir != null) {
+            String name = mapPath.substring(mapPath.lastIndexOf('/') + 1) + ".solution";
+            Gdx.files.absolute(outDir).child(name).writeString("# " + mapPath + ", exit at step "
+                    + replay.getExitStep() + "\n" + recording, false);
+        }
+        return true;
+    }
+}
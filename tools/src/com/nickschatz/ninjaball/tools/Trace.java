@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2014 Nick Schatz
+ *
+ * This software is provided 'as-is', without any express or implied
+ * warranty. In no event will the authors be held liable for any damages
+ * arising from the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *    1. The origin of this software must not be misrepresented; you must not
+ *    claim that you wrote the original software. If you use this software
+ *    in a product, an acknowledgment in the product documentation would be
+ *    appreciated but is not required.
+ *
+ *    2. Altered source versions must be plainly marked as such, and must not be
+ *    misrepresented as being the original software.
+ *
+ *    3. This notice may not be removed or altered from any source
+ *    distribution.
+ */
+
+package com.nickschatz.ninjaball.tools;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.nickschatz.ninjaball.physics.Units;
+
+/**
+ * The player's path through a run, sampled every {@link #INTERVAL} steps.
+ * Stored as text, one line per sample: {@code <step> <x> <y>} in map pixels, so a path recorded
+ * before a change of physics units can still be compared. Lines starting with # are ignored.
+ */
+public class Trace {
+
+    public static final int INTERVAL = 150;
+
+    private final IntArray steps = new IntArray();
+    private final FloatArray xs = new FloatArray();
+    private final FloatArray ys = new FloatArray();
+
+    public Trace() {
+    }
+
+    public Trace(FileHandle file) {
+        String[] lines = file.readString().split("\n");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.length() == 0 || line.startsWith("#")) continue;
+
+            String[] parts = line.split("\\s+");
+            try {
+                steps.add(Integer.parseInt(parts[0]));
+                xs.add(Float.parseFloat(parts[1]));
+                ys.add(Float.parseFloat(parts[2]));
+            } catch (NumberFormatException e) {
+                throw new GdxRuntimeException(file.path() + ":" + (i + 1) + " " + e.getMessage());
+            } catch (ArrayIndexOutOfBoundsException e) {
+                throw new GdxRuntimeException(file.path() + ":" + (i + 1) + " expected <step> <x> <y>");
+            }
+        }
+    }
+
+    /**
+     * @param position in metres.
+     */
+    void sample(int step, Vector2 position) {
+        steps.add(step);
+        xs.add(Units.toPixels(position.x));
+        ys.add(Units.toPixels(position.y));
+    }
+
+    /**
+     * @return the first sample of this trace further than tolerance map pixels from the expected one,
+     * the first one missing if this trace is shorter, or -1.
+     */
+    public int findDivergence(Trace expected, float tolerance) {
+        for (int i = 0; i < expected.steps.size; i++) {
+            if (i >= steps.size || steps.get(i) != expected.steps.get(i)
+                    || distance(expected, i) > tolerance) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return how far sample i of this trace is from sample i of the other, in map pixels.
+     */
+    public float distance(Trace other, int i) {
+        float dx = xs.get(i) - other.xs.get(i);
+        float dy = ys.get(i) - other.ys.get(i);
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+
+    public String describe(int i) {
+        return i < steps.size ? "step " + steps.get(i) + " at " + Math.round(xs.get(i)) + ", " + Math.round(ys.get(i))
+                : "no sample";
+    }
+
+    public void write(FileHandle file, String comment) {
+        StringBuilder text = new StringBuilder();
+        text.append("# ").append(comment).append('\n');
+        for (int i = 0; i < steps.size; i++) {
+            text.append(steps.get(i)).append(' ').append(xs.get(i)).append(' ').append(ys.get(i)).append('\n');
+        }
+        file.writeString(text.toString(), false);
+    }
+}